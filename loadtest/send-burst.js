@@ -0,0 +1,53 @@
+// k6 run -e BASE_URL=http://localhost:8080 -e EMAIL=a@gmail.com -e PASSWORD=... -e RECEIVER=b@gmail.com loadtest/send-burst.js
+// chạy 2 lần: spring.threads.virtual.enabled=false (platform) và =true (virtual, Java 21+), so sánh kết quả
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const RECEIVER = __ENV.RECEIVER;
+const rejected = new Counter('send_rejected');
+
+export const options = {
+    scenarios: {
+        // đợt gửi dồn dập: vượt xa 10 thread + queue 100 của chế độ platform
+        burst: {
+            executor: 'ramping-arrival-rate',
+            startRate: 50,
+            timeUnit: '1s',
+            preAllocatedVUs: 200,
+            maxVUs: 1000,
+            stages: [
+                { target: 50, duration: '30s' },
+                { target: 500, duration: '30s' },
+                { target: 500, duration: '1m' },
+                { target: 50, duration: '30s' },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        http_req_duration: ['p(95)<500', 'p(99)<1500'],
+    },
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/v1/auth/login`,
+        JSON.stringify({ email: __ENV.EMAIL, password: __ENV.PASSWORD }),
+        { headers: { 'Content-Type': 'application/json', 'User-Agent': 'web' } });
+    check(res, { 'login ok': (r) => r.status === 200 });
+    return { token: res.json('accessToken') };
+}
+
+export default function (data) {
+    const res = http.post(`${BASE_URL}/api/v1/messages/chat`, {
+        senderId: __ENV.EMAIL,
+        receiverId: RECEIVER,
+        senderName: 'k6',
+        textContent: `burst ${__VU}-${__ITER}`,
+        messageType: 'TEXT',
+        messageStatus: 'SENDING',
+    }, { headers: { Authorization: `Bearer ${data.token}` } });
+    if (res.status >= 500) rejected.add(1);
+    check(res, { 'sent': (r) => r.status === 200 });
+}
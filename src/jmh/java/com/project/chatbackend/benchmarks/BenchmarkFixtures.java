@@ -0,0 +1,151 @@
+package com.project.chatbackend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.chatbackend.configs.JacksonConfig;
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.requests.ChatRequest;
+import org.bson.types.ObjectId;
+import org.mockito.Mockito;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.DefaultContentTypeResolver;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.util.MimeTypeUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * dữ liệu mẫu và các thành phần thay thế mongo/broker dùng chung cho các benchmark,
+ * repository được thay bằng mock stubOnly để chỉ đo phần xử lý của ứng dụng
+ */
+final class BenchmarkFixtures {
+    static final String SENDER = "a@gmail.com";
+    static final String RECEIVER = "b@gmail.com";
+    static final String SINGLE_ROOM_ID = SENDER + "_" + RECEIVER;
+    static final String GROUP_ID = "65f0c0ffee0000000000000a";
+
+    private BenchmarkFixtures() {
+    }
+
+    static <T> T stub(Class<T> type) {
+        return Mockito.mock(type, Mockito.withSettings().stubOnly());
+    }
+
+    // cùng cấu hình với bean stompObjectMapper
+    static ObjectMapper stompObjectMapper() {
+        JacksonConfig jacksonConfig = new JacksonConfig();
+        return jacksonConfig.stompObjectMapper(jacksonConfig.objectMapper(Jackson2ObjectMapperBuilder.json()));
+    }
+
+    // cùng converter với WebSocketConfig, payload được serialize thật rồi bỏ đi
+    static SimpMessagingTemplate messagingTemplate(CountingChannel channel) {
+        DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
+        resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(stompObjectMapper());
+        converter.setContentTypeResolver(resolver);
+        SimpMessagingTemplate template = new SimpMessagingTemplate(channel);
+        template.setMessageConverter(converter);
+        return template;
+    }
+
+    static ChatRequest textRequest(String receiverId) {
+        return ChatRequest.builder()
+                .senderId(SENDER)
+                .receiverId(receiverId)
+                .senderName("A")
+                .senderAvatar("https://cdn.example.com/a.png")
+                .textContent("tối nay đi ăn không?")
+                .messageType(MessageType.TEXT)
+                .messageStatus(MessageStatus.SENDING)
+                .build();
+    }
+
+    static Message textMessage(String roomId, String senderId, String receiverId,
+                               String text, MessageStatus status, LocalDateTime sendDate) {
+        return Message.builder()
+                .id(new ObjectId().toHexString())
+                .roomId(roomId)
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .content(TextContent.of(text))
+                .messageType(MessageType.TEXT)
+                .messageStatus(status)
+                .sendDate(sendDate)
+                .build();
+    }
+
+    // trang lịch sử kiểu chat đơn: xen kẽ 2 người, vài tin của người kia đang gửi/lỗi
+    static List<Message> historyPage(int size) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Message> messages = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean mine = i % 2 == 0;
+            MessageStatus status = MessageStatus.SEEN;
+            if (!mine && i % 13 == 1) status = MessageStatus.SENDING;
+            if (!mine && i % 17 == 3) status = MessageStatus.ERROR;
+            messages.add(textMessage(SINGLE_ROOM_ID,
+                    mine ? SENDER : RECEIVER,
+                    mine ? RECEIVER : SENDER,
+                    "tin nhắn số " + i, status, now.minusMinutes(i)));
+        }
+        return messages;
+    }
+
+    static User user(String email) {
+        return User.builder()
+                .email(email)
+                .name(email.substring(0, email.indexOf('@')))
+                .avatar("https://cdn.example.com/" + email + ".png")
+                .friends(new ArrayList<>())
+                .build();
+    }
+
+    // nhóm có members thành viên, SENDER là trưởng nhóm
+    static Group group(int members) {
+        List<String> memberIds = new ArrayList<>(members);
+        memberIds.add(SENDER);
+        for (int i = 1; i < members; i++) memberIds.add("member" + i + "@gmail.com");
+        return Group.builder()
+                .id(GROUP_ID)
+                .groupName("nhóm " + members)
+                .avatar("https://cdn.example.com/group.png")
+                .members(memberIds)
+                .owner(SENDER)
+                .admins(new ArrayList<>())
+                .numberOfMembers(members)
+                .sendMessagePermission(SendMessagePermission.PUBLIC)
+                .groupStatus(GroupStatus.ACTIVE)
+                .build();
+    }
+
+    static Room room(String roomId, String senderId, String receiverId, RoomType roomType) {
+        return Room.builder()
+                .id(new ObjectId().toHexString())
+                .roomId(roomId)
+                .senderId(senderId)
+                .receiverId(receiverId)
+                .roomType(roomType)
+                .latestMessage("tối nay đi ăn không?")
+                .numberOfUnreadMessage(3)
+                .time(LocalDateTime.now())
+                .roomStatus(RoomStatus.ACTIVE)
+                .build();
+    }
+
+    /**
+     * thay cho broker: đếm số byte payload để JIT không bỏ qua bước serialize
+     */
+    static final class CountingChannel implements MessageChannel {
+        long bytes;
+
+        @Override
+        public boolean send(org.springframework.messaging.Message<?> message, long timeout) {
+            bytes += ((byte[]) message.getPayload()).length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.project.chatbackend.benchmarks;
+
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.responses.UserNotify;
+import com.project.chatbackend.services.NotificationDispatcher;
+import com.project.chatbackend.services.NotifyProtocolRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.chatbackend.benchmarks.BenchmarkFixtures.*;
+
+/**
+ * thông báo CREATE_GROUP cho cả nhóm: convertAndSendToUser từng thành viên
+ * so với NotificationDispatcher (message encode 1 lần, mỗi thành viên chỉ encode room)
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=GroupNotifyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GroupNotifyBenchmark {
+    @Param({"50", "500"})
+    private int members;
+    private SimpMessagingTemplate simpMessagingTemplate;
+    private NotificationDispatcher notificationDispatcher;
+    private CountingChannel channel;
+    private Message message;
+    private Map<String, Room> roomsByMember;
+
+    @Setup
+    public void setup() {
+        channel = new CountingChannel();
+        simpMessagingTemplate = messagingTemplate(channel);
+        notificationDispatcher = new NotificationDispatcher(simpMessagingTemplate, stompObjectMapper(),
+                new NotifyProtocolRegistry());
+        message = textMessage(GROUP_ID, "system@gmail.com", GROUP_ID, "A đã tạo nhóm",
+                MessageStatus.SENT, LocalDateTime.now());
+        List<String> memberIds = group(members).getMembers();
+        roomsByMember = new LinkedHashMap<>();
+        for (String memberId : memberIds) {
+            roomsByMember.put(memberId, room(GROUP_ID, memberId, GROUP_ID, RoomType.GROUP_CHAT));
+        }
+    }
+
+    @Benchmark
+    public long perRecipient() {
+        roomsByMember.forEach((memberId, room) -> {
+            UserNotify userNotify = UserNotify.builder()
+                    .message(message)
+                    .status("CREATE_GROUP")
+                    .room(room)
+                    .build();
+            simpMessagingTemplate.convertAndSendToUser(memberId, "queue/messages", userNotify);
+        });
+        return channel.bytes;
+    }
+
+    @Benchmark
+    public long sharedEncode() {
+        UserNotify userNotify = UserNotify.builder()
+                .message(message)
+                .status("CREATE_GROUP")
+                .build();
+        notificationDispatcher.sendWithRooms(userNotify, roomsByMember);
+        return channel.bytes;
+    }
+
+    @Benchmark
+    public long sameNotifyPerRecipient() {
+        UserNotify userNotify = UserNotify.builder().message(message).status("SENT").build();
+        for (String memberId : roomsByMember.keySet()) {
+            simpMessagingTemplate.convertAndSendToUser(memberId, "queue/messages", userNotify);
+        }
+        return channel.bytes;
+    }
+
+    @Benchmark
+    public long sameNotifyEncodedOnce() {
+        UserNotify userNotify = UserNotify.builder().message(message).status("SENT").build();
+        notificationDispatcher.sendToUsers(roomsByMember.keySet(), userNotify);
+        return channel.bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.project.chatbackend.benchmarks;
+
+import com.project.chatbackend.exceptions.DataNotFoundException;
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.repositories.*;
+import com.project.chatbackend.responses.MessageResponse;
+import com.project.chatbackend.responses.RoomResponse;
+import com.project.chatbackend.services.*;
+import com.project.chatbackend.utils.CallHandler;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.chatbackend.benchmarks.BenchmarkFixtures.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * đường đọc: lọc/sắp xếp 1 trang tin nhắn (getAllByRoomId) và map room sang RoomResponse,
+ * repository trả dữ liệu có sẵn trong bộ nhớ
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=HistoryBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark {
+    @Param({"40"})
+    public int pageSize;
+
+    private MessageService messageService;
+    private RoomService roomService;
+    private PageRequest pageRequest;
+    private Room singleRoom;
+    private Room groupRoom;
+
+    @Setup
+    public void setup() {
+        pageRequest = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "sendDate"));
+        List<Message> page = historyPage(pageSize);
+        MessageRepository messageRepository = stub(MessageRepository.class);
+        when(messageRepository.getAllByRoomId(eq(SINGLE_ROOM_ID), any(PageRequest.class)))
+                .thenReturn(new PageImpl<>(page, pageRequest, 10L * pageSize));
+
+        User receiver = user(RECEIVER);
+        Group group = group(50);
+        UserRepository userRepository = stub(UserRepository.class);
+        when(userRepository.findAllById(any())).thenReturn(List.of(receiver));
+        when(userRepository.findById(RECEIVER)).thenReturn(Optional.of(receiver));
+        GroupRepository groupRepository = stub(GroupRepository.class);
+        when(groupRepository.findById(GROUP_ID)).thenReturn(Optional.of(group));
+        GroupMembershipCache groupMembershipCache = stub(GroupMembershipCache.class);
+        when(groupMembershipCache.get(SINGLE_ROOM_ID)).thenReturn(Optional.empty());
+
+        roomService = new RoomService(stub(RoomRepository.class), userRepository, groupRepository,
+                stub(IMessageRepositoryQuery.class), stub(RoomLatestRepository.class), groupMembershipCache);
+        messageService = new MessageService(userRepository, groupMembershipCache,
+                stub(ReplyParentResolver.class), stompObjectMapper(), stub(RoomRepository.class),
+                messageRepository, stub(RoomLatestRepository.class), stub(IMessageRepositoryQuery.class),
+                roomService, stub(S3UploadService.class), stub(NotificationDispatcher.class),
+                stub(CallHandler.class), stub(FanOutAdmission.class),
+                stub(MessageOutbox.class), stub(GroupBroadcaster.class));
+
+        singleRoom = room(SINGLE_ROOM_ID, SENDER, RECEIVER, RoomType.SINGLE_CHAT);
+        groupRoom = room(GROUP_ID, SENDER, GROUP_ID, RoomType.GROUP_CHAT);
+    }
+
+    @Benchmark
+    public MessageResponse getAllByRoomId() {
+        return messageService.getAllByRoomId(SENDER, SINGLE_ROOM_ID, pageRequest);
+    }
+
+    @Benchmark
+    public RoomResponse mapSingleRoomToRoomResponse() throws DataNotFoundException {
+        return roomService.mapRoomToRoomResponse(singleRoom);
+    }
+
+    @Benchmark
+    public RoomResponse mapGroupRoomToRoomResponse() throws DataNotFoundException {
+        return roomService.mapRoomToRoomResponse(groupRoom);
+    }
+}
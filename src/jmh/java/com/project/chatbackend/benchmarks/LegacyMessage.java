@@ -0,0 +1,59 @@
+package com.project.chatbackend.benchmarks;
+
+import com.project.chatbackend.models.*;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * shape của Message trước khi content được định kiểu: content là Object,
+ * converter ghi/đọc bằng reflection kèm _class
+ */
+@Document(collection = "messages")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class LegacyMessage {
+    @Id
+    private String id;
+    @Field(name = "room_id")
+    private String roomId;
+    @Field(name = "sender_id")
+    private String senderId;
+    @Field(name = "receiver_id")
+    private String receiverId;
+    private Object content;
+    @Field(name = "send_date")
+    private LocalDateTime sendDate;
+    @Field(name = "seen_date")
+    private LocalDateTime seenDate;
+    @Field(name = "message_type")
+    private MessageType messageType;
+    @Field(name = "number_of_emojis")
+    private int numberOfEmojis;
+    @Field(name = "message_status")
+    private MessageStatus messageStatus;
+    @Field(name = "hidden_sender_side")
+    private boolean hiddenSenderSide;
+    @Field(name = "sender_avatar")
+    private String senderAvatar;
+    @Field(name = "sender_name")
+    private String senderName;
+
+    static LegacyMessage from(Message message) {
+        Object content = message.getContent();
+        if (content instanceof TextContent text) content = text.toString();
+        else if (content instanceof FileGroupContent group) content = group.getFiles();
+        return new LegacyMessage(message.getId(), message.getRoomId(), message.getSenderId(),
+                message.getReceiverId(), content, message.getSendDate(), message.getSeenDate(),
+                message.getMessageType(), message.getNumberOfEmojis(), message.getMessageStatus(),
+                message.isHiddenSenderSide(), message.getSenderAvatar(), message.getSenderName());
+    }
+}
@@ -0,0 +1,128 @@
+package com.project.chatbackend.benchmarks;
+
+import com.project.chatbackend.configs.MessageContentConverters;
+import com.project.chatbackend.models.*;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * đo tốc độ decode 1 trang lịch sử (40 tin nhắn) từ BSON:
+ * content kiểu Object (reflection + _class) so với MessageContent + converter riêng.
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=MessageContentDecodeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageContentDecodeBenchmark {
+    private static final int PAGE_SIZE = 40;
+
+    private MappingMongoConverter legacyConverter;
+    private MappingMongoConverter typedConverter;
+    private final List<Document> legacyPage = new ArrayList<>();
+    private final List<Document> typedPage = new ArrayList<>();
+
+    @Setup
+    public void setup() {
+        legacyConverter = converter(new MongoCustomConversions(List.of()));
+        typedConverter = converter(new MongoCustomConversions(MessageContentConverters.converters()));
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Message message = message(i, now.minusMinutes(i));
+            Document typed = new Document();
+            typedConverter.write(message, typed);
+            typedPage.add(typed);
+            Document legacy = new Document();
+            legacyConverter.write(LegacyMessage.from(message), legacy);
+            legacyPage.add(legacy);
+        }
+    }
+
+    @Benchmark
+    public void decodeLegacyObjectContent(Blackhole blackhole) {
+        for (Document document : legacyPage) {
+            blackhole.consume(legacyConverter.read(LegacyMessage.class, document));
+        }
+    }
+
+    @Benchmark
+    public void decodeTypedContent(Blackhole blackhole) {
+        for (Document document : typedPage) {
+            blackhole.consume(typedConverter.read(Message.class, document));
+        }
+    }
+
+    private static MappingMongoConverter converter(MongoCustomConversions conversions) {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+
+    // tỉ lệ gần với 1 trang lịch sử thật: 30 text, 6 file, 2 nhóm ảnh, 2 cuộc gọi
+    private static Message message(int i, LocalDateTime sendDate) {
+        MessageContent content;
+        MessageType type;
+        switch (i % 20) {
+            case 5, 11, 17 -> {
+                content = file(i, "jpg");
+                type = MessageType.IMAGE;
+            }
+            case 8 -> {
+                content = new FileGroupContent(List.of(file(i, "jpg"), file(i + 1, "jpg"), file(i + 2, "png")));
+                type = MessageType.IMAGE_GROUP;
+            }
+            case 14 -> {
+                content = CallInfo.builder()
+                        .startTime(sendDate)
+                        .endTime(sendDate.plusMinutes(3))
+                        .duration(180)
+                        .callStatus(CallStatus.END)
+                        .build();
+                type = MessageType.AUDIO_CALL;
+            }
+            default -> {
+                content = TextContent.of("tin nhắn số " + i + " trong cuộc trò chuyện");
+                type = MessageType.TEXT;
+            }
+        }
+        return Message.builder()
+                .id(new ObjectId().toHexString())
+                .roomId("a@gmail.com_b@gmail.com")
+                .senderId(i % 2 == 0 ? "a@gmail.com" : "b@gmail.com")
+                .receiverId(i % 2 == 0 ? "b@gmail.com" : "a@gmail.com")
+                .content(content)
+                .sendDate(sendDate)
+                .messageType(type)
+                .messageStatus(MessageStatus.SEEN)
+                .senderName(i % 2 == 0 ? "A" : "B")
+                .build();
+    }
+
+    private static FileObject file(int i, String extension) {
+        String key = "file_" + i + "." + extension;
+        return FileObject.builder()
+                .filename("file_" + i)
+                .fileKey(key)
+                .fileExtension(extension)
+                .filePath("https://bucket.s3.amazonaws.com/" + key)
+                .size(120_000L + i)
+                .build();
+    }
+}
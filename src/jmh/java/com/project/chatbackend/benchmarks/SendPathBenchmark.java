@@ -0,0 +1,120 @@
+package com.project.chatbackend.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.repositories.*;
+import com.project.chatbackend.requests.ChatRequest;
+import com.project.chatbackend.services.*;
+import com.project.chatbackend.utils.CallHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.chatbackend.benchmarks.BenchmarkFixtures.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * đường gửi tin nhắn text vào nhóm 2/50/500 thành viên:
+ * MessageService.sendMessage (như MessageController) -> outbox -> FanOutAdmission -> S3UploadAsync.deliverNow
+ * -> fan-out room + STOMP.
+ * fan-out dùng RoomCounterRepositoryImpl thật trên MongoTemplate giả
+ * để đo chi phí dựng bulk update theo số thành viên.
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=SendPathBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SendPathBenchmark {
+    @Param({"2", "50", "500"})
+    public int members;
+
+    private MessageService messageService;
+    private S3UploadAsync s3UploadAsync;
+    private CountingChannel channel;
+    private ChatRequest chatRequest;
+    private GroupSnapshot group;
+
+    @Setup
+    public void setup() {
+        group = GroupSnapshot.from(group(members));
+        chatRequest = textRequest(GROUP_ID);
+
+        MongoTemplate mongoTemplate = stub(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(Room.class)))
+                .thenReturn(stub(BulkOperations.class));
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Room.class)))
+                .thenReturn(room(GROUP_ID, SENDER, GROUP_ID, RoomType.GROUP_CHAT));
+        RoomCounterRepositoryImpl roomCounterRepository = new RoomCounterRepositoryImpl(mongoTemplate);
+
+        RoomRepository roomRepository = stub(RoomRepository.class);
+        when(roomRepository.fanOut(any(), any(), any(), any(), any(), any(), any())).thenAnswer(invocation ->
+                roomCounterRepository.fanOut(invocation.getArgument(0), invocation.getArgument(1),
+                        invocation.<Collection<String>>getArgument(2), invocation.getArgument(3),
+                        invocation.getArgument(4), invocation.getArgument(5),
+                        invocation.<LocalDateTime>getArgument(6)));
+        MessageRepository messageRepository = stub(MessageRepository.class);
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        UserRepository userRepository = stub(UserRepository.class);
+        RoomLatestRepository roomLatestRepository = stub(RoomLatestRepository.class);
+
+        channel = new CountingChannel();
+        SimpMessagingTemplate simpMessagingTemplate = messagingTemplate(channel);
+        ObjectMapper objectMapper = stompObjectMapper();
+
+        // không có proxy @Async => deliverAsync chạy đồng bộ trên thread benchmark
+        // outbox thật trên repository giả: tính cả chi phí dựng event, không tính round trip
+        MessageOutbox messageOutbox = new MessageOutbox(stub(OutboxRepository.class));
+        // không có session v2 => chỉ encode UserNotify như client hiện tại
+        NotifyProtocolRegistry notifyProtocolRegistry = new NotifyProtocolRegistry();
+        NotificationDispatcher notificationDispatcher = new NotificationDispatcher(simpMessagingTemplate,
+                objectMapper, notifyProtocolRegistry);
+        GroupBroadcaster groupBroadcaster = new GroupBroadcaster(simpMessagingTemplate, notifyProtocolRegistry);
+        s3UploadAsync = new S3UploadAsync(userRepository, notificationDispatcher, messageRepository,
+                roomRepository, roomLatestRepository, messageOutbox, groupBroadcaster);
+        FanOutAdmission fanOutAdmission = new FanOutAdmission(s3UploadAsync, messageRepository, messageOutbox,
+                notificationDispatcher, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(fanOutAdmission, "perUserLimit", 20);
+        // room context và nhóm đã có trong cache như lúc chạy thật
+        RoomService roomService = stub(RoomService.class);
+        when(roomService.findRoomContext(SENDER, GROUP_ID))
+                .thenReturn(Optional.of(new RoomContext(GROUP_ID, RoomType.GROUP_CHAT)));
+        GroupMembershipCache groupMembershipCache = stub(GroupMembershipCache.class);
+        when(groupMembershipCache.get(GROUP_ID)).thenReturn(Optional.of(group));
+        messageService = new MessageService(userRepository, groupMembershipCache,
+                stub(ReplyParentResolver.class), objectMapper, roomRepository, messageRepository,
+                roomLatestRepository, stub(IMessageRepositoryQuery.class), roomService,
+                stub(S3UploadService.class), notificationDispatcher, stub(CallHandler.class), fanOutAdmission,
+                messageOutbox, groupBroadcaster);
+    }
+
+    @Benchmark
+    public long sendMessage() throws Exception {
+        messageService.sendMessage(chatRequest);
+        return channel.bytes;
+    }
+
+    @Benchmark
+    public long deliverFanOut() {
+        Message message = textMessage(GROUP_ID, SENDER, GROUP_ID, chatRequest.getTextContent(),
+                MessageStatus.SENDING, null);
+        s3UploadAsync.deliverNow(message, chatRequest.getSenderName(), group, null);
+        return channel.bytes;
+    }
+}
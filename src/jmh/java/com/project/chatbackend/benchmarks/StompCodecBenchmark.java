@@ -0,0 +1,143 @@
+package com.project.chatbackend.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.chatbackend.calls.Candidate;
+import com.project.chatbackend.calls.CandidateMessage;
+import com.project.chatbackend.calls.Offer;
+import com.project.chatbackend.calls.OfferMessage;
+import com.project.chatbackend.configs.StompCodec;
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.responses.TypingChat;
+import com.project.chatbackend.responses.UserNotify;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.chatbackend.benchmarks.BenchmarkFixtures.*;
+
+/**
+ * kích thước và thời gian encode/decode payload STOMP theo từng định dạng (JSON, CBOR, Smile)
+ * - encode giống đường gửi thật: converter JSON encode rồi StompCodecInterceptor chuyển sang CBOR/Smile
+ *   (fan-out nhiều session cùng định dạng chỉ chuyển 1 lần, ở đây đo đúng 1 lần đó)
+ * - decode giống SEND từ client: converter của định dạng đó đọc thẳng payload
+ * kích thước (payload client nhận) báo qua aux counter: bytes / encodes = số byte mỗi payload
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=StompCodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StompCodecBenchmark {
+    private static final String SDP = "v=0\r\no=- 4611731400430051336 2 IN IP4 127.0.0.1\r\ns=-\r\nt=0 0\r\n"
+            + "a=group:BUNDLE 0 1\r\na=msid-semantic: WMS stream\r\n"
+            + "m=audio 9 UDP/TLS/RTP/SAVPF 111 103 104 9 0 8 106 105 13 110 112 113 126\r\n"
+            + "c=IN IP4 0.0.0.0\r\na=rtcp:9 IN IP4 0.0.0.0\r\na=ice-ufrag:4ZcD\r\n"
+            + "a=ice-pwd:2/1muCWoOi3uLifh0NuRHlLJ\r\na=fingerprint:sha-256 "
+            + "7B:8B:F0:65:5F:78:E2:51:3B:AC:6F:F3:3F:46:1B:35:DC:B8:5F:64:1A:24:C2:43:F0:A1:58:D0:A1:2C:19:08\r\n";
+    @Param({"JSON", "CBOR", "SMILE"})
+    private StompCodec codec;
+    // converter JSON trên đường gửi
+    private ObjectMapper jsonMapper;
+    // converter của định dạng cho SEND từ client, cùng cấu hình với WebSocketConfig
+    private ObjectMapper codecMapper;
+    private UserNotify success;
+    private TypingChat typingChat;
+    private OfferMessage offer;
+    private CandidateMessage candidate;
+    private byte[] typingChatBytes;
+    private byte[] offerBytes;
+    private byte[] candidateBytes;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        jsonMapper = stompObjectMapper();
+        codecMapper = jsonMapper.copyWith(codec.getFactory().copy());
+        Message message = textMessage(SINGLE_ROOM_ID, SENDER, RECEIVER, "tối nay đi ăn không?",
+                MessageStatus.SENT, LocalDateTime.now());
+        success = UserNotify.builder()
+                .status("SUCCESS")
+                .senderId(SENDER)
+                .receiverId(RECEIVER)
+                .message(message)
+                .room(room(SINGLE_ROOM_ID, SENDER, RECEIVER, RoomType.SINGLE_CHAT))
+                .build();
+        typingChat = TypingChat.builder()
+                .status("TYPING")
+                .senderId(SENDER)
+                .receiverId(RECEIVER)
+                .senderName("A")
+                .roomId(SINGLE_ROOM_ID)
+                .senderAvatar("https://cdn.example.com/a.png")
+                .build();
+        offer = new OfferMessage(RECEIVER, SENDER, new Offer(SDP, "offer"));
+        candidate = new CandidateMessage(RECEIVER, SENDER,
+                new Candidate("candidate", "0", "0", "candidate:842163049 1 udp 1677729535 10.0.0.5 56143 typ srflx"));
+        typingChatBytes = codecMapper.writeValueAsBytes(typingChat);
+        offerBytes = codecMapper.writeValueAsBytes(offer);
+        candidateBytes = codecMapper.writeValueAsBytes(candidate);
+    }
+
+    @Benchmark
+    public byte[] userNotify(EncodedSize size) throws JsonProcessingException {
+        return size.record(encode(success));
+    }
+
+    @Benchmark
+    public byte[] typingChat(EncodedSize size) throws JsonProcessingException {
+        return size.record(encode(typingChat));
+    }
+
+    @Benchmark
+    public byte[] offer(EncodedSize size) throws JsonProcessingException {
+        return size.record(encode(offer));
+    }
+
+    @Benchmark
+    public byte[] candidate(EncodedSize size) throws JsonProcessingException {
+        return size.record(encode(candidate));
+    }
+
+    @Benchmark
+    public TypingChat decodeTypingChat() throws IOException {
+        return codecMapper.readValue(typingChatBytes, TypingChat.class);
+    }
+
+    @Benchmark
+    public OfferMessage decodeOffer() throws IOException {
+        return codecMapper.readValue(offerBytes, OfferMessage.class);
+    }
+
+    @Benchmark
+    public CandidateMessage decodeCandidate() throws IOException {
+        return codecMapper.readValue(candidateBytes, CandidateMessage.class);
+    }
+
+    // 2 counter cùng cách cộng dồn nên tỉ lệ bytes / encodes không phụ thuộc số thread, số iteration
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+        public long encodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+            encodes = 0;
+        }
+
+        byte[] record(byte[] payload) {
+            bytes += payload.length;
+            encodes++;
+            return payload;
+        }
+    }
+
+    private byte[] encode(Object payload) throws JsonProcessingException {
+        return codec.fromJson(jsonMapper.writeValueAsBytes(payload));
+    }
+}
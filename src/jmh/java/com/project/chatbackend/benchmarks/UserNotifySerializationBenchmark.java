@@ -0,0 +1,82 @@
+package com.project.chatbackend.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.responses.NotifyEvent;
+import com.project.chatbackend.responses.UserNotify;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import static com.project.chatbackend.benchmarks.BenchmarkFixtures.*;
+
+/**
+ * serialize UserNotify (và NotifyEvent v2) gửi qua STOMP: chỉ ObjectMapper và cả convertAndSendToUser
+ * (dựng header + converter), broker được thay bằng channel chỉ đếm byte
+ * chạy: mvn -Pjmh test-compile exec:exec -Djmh.includes=UserNotifySerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserNotifySerializationBenchmark {
+    private ObjectMapper stompObjectMapper;
+    private SimpMessagingTemplate simpMessagingTemplate;
+    private CountingChannel channel;
+    private UserNotify sent;
+    private UserNotify success;
+
+    @Setup
+    public void setup() {
+        stompObjectMapper = stompObjectMapper();
+        channel = new CountingChannel();
+        simpMessagingTemplate = messagingTemplate(channel);
+        Message message = textMessage(SINGLE_ROOM_ID, SENDER, RECEIVER, "tối nay đi ăn không?",
+                MessageStatus.SENT, LocalDateTime.now());
+        sent = UserNotify.builder()
+                .status("SENT")
+                .senderId(SENDER)
+                .receiverId(RECEIVER)
+                .message(message)
+                .build();
+        success = UserNotify.builder()
+                .status("SUCCESS")
+                .senderId(SENDER)
+                .receiverId(RECEIVER)
+                .message(message)
+                .room(room(SINGLE_ROOM_ID, SENDER, RECEIVER, RoomType.SINGLE_CHAT))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] writeSentNotify() throws JsonProcessingException {
+        return stompObjectMapper.writeValueAsBytes(sent);
+    }
+
+    @Benchmark
+    public byte[] writeSuccessNotify() throws JsonProcessingException {
+        return stompObjectMapper.writeValueAsBytes(success);
+    }
+
+    // giao thức v2: cùng sự kiện dưới dạng NotifyEvent
+    @Benchmark
+    public byte[] writeSentEvent() throws JsonProcessingException {
+        return stompObjectMapper.writeValueAsBytes(NotifyEvent.from(sent));
+    }
+
+    @Benchmark
+    public byte[] writeSuccessEvent() throws JsonProcessingException {
+        return stompObjectMapper.writeValueAsBytes(NotifyEvent.from(success));
+    }
+
+    @Benchmark
+    public long convertAndSendToUser() {
+        simpMessagingTemplate.convertAndSendToUser(RECEIVER, "queue/messages", sent);
+        return channel.bytes;
+    }
+}
@@ -0,0 +1,15 @@
+package com.project.chatbackend.cluster;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * message STOMP đã serialize, chuyển nguyên byte giữa các node để node nhận không phải encode lại
+ */
+@Getter
+@AllArgsConstructor
+public class ClusterEnvelope {
+    private final String destination;
+    private final String contentType;
+    private final byte[] payload;
+}
@@ -0,0 +1,28 @@
+package com.project.chatbackend.cluster;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * kênh trao đổi message STOMP giữa các instance khi mỗi instance chạy simple broker riêng,
+ * kèm bảng user -> các node đang có session của user đó
+ */
+public interface ClusterRelay {
+    String nodeId();
+
+    // bắt đầu nhận envelope do node khác gửi tới node này
+    void start(Consumer<ClusterEnvelope> listener);
+
+    void stop();
+
+    void publish(String nodeId, ClusterEnvelope envelope);
+
+    // gửi tới tất cả node khác
+    void broadcast(ClusterEnvelope envelope);
+
+    void registerUser(String userId);
+
+    void unregisterUser(String userId);
+
+    Set<String> nodesOf(String userId);
+}
@@ -0,0 +1,178 @@
+package com.project.chatbackend.cluster;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeType;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * nối simple broker của các node qua ClusterRelay:
+ * - message gửi vào brokerChannel của node này tới /user/{id}/... => chuyển cho các node đang có session của user,
+ *   tới /topic/... => chuyển cho mọi node
+ * - envelope node khác gửi tới => đưa vào brokerChannel của node này, đánh dấu để không chuyển tiếp lần nữa
+ * - invalidate(cache, key) => báo mọi node khác xóa key khỏi cache trong process đã đăng ký qua onInvalidate
+ * - user được gắn với node khi có session subscribe /user/queue/... (principal) hoặc /user/{id}/...,
+ *   bỏ khi session cuối cùng của user ngắt kết nối
+ */
+@Slf4j
+public class ClusterRelayBridge implements ChannelInterceptor {
+    static final String RELAYED_HEADER = "chatRelayed";
+    private static final String USER_PREFIX = "/user/";
+    private static final String TOPIC_PREFIX = "/topic/";
+    // envelope báo xóa cache, xử lý trên node nhận chứ không đưa vào broker
+    private static final String INVALIDATE_PREFIX = "/cluster/invalidate/";
+    // segment ngay sau /user/ là prefix của broker chứ không phải user id
+    private static final Set<String> PRINCIPAL_DESTINATIONS = Set.of("queue", "topic");
+    private final ClusterRelay clusterRelay;
+    private final ObjectProvider<MessageChannel> brokerChannel;
+    private final Map<String, Set<String>> usersBySession = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> sessionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Consumer<String>> invalidationHandlers = new ConcurrentHashMap<>();
+
+    public ClusterRelayBridge(ClusterRelay clusterRelay, ObjectProvider<MessageChannel> brokerChannel) {
+        this.clusterRelay = clusterRelay;
+        this.brokerChannel = brokerChannel;
+    }
+
+    @PostConstruct
+    void start() {
+        clusterRelay.start(this::receive);
+        log.info("cluster relay started on node {}", clusterRelay.nodeId());
+    }
+
+    @PreDestroy
+    void stop() {
+        clusterRelay.stop();
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        MessageHeaders headers = message.getHeaders();
+        if (SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                || headers.containsKey(RELAYED_HEADER)
+                // bản đã được UserDestinationMessageHandler dịch lại, bản gốc đã được chuyển rồi
+                || headers.containsKey(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION)
+                || !(message.getPayload() instanceof byte[] payload)) {
+            return message;
+        }
+        String destination = SimpMessageHeaderAccessor.getDestination(headers);
+        if (destination == null) return message;
+        // content-type có thể là MimeType hoặc String tuỳ nơi tạo message
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        ClusterEnvelope envelope = new ClusterEnvelope(destination,
+                contentType != null ? contentType.toString() : null, payload);
+        try {
+            if (destination.startsWith(USER_PREFIX)) {
+                String userId = userOf(destination);
+                for (String nodeId : clusterRelay.nodesOf(userId)) {
+                    if (!nodeId.equals(clusterRelay.nodeId())) clusterRelay.publish(nodeId, envelope);
+                }
+            } else if (destination.startsWith(TOPIC_PREFIX)) {
+                clusterRelay.broadcast(envelope);
+            }
+        } catch (RuntimeException e) {
+            // lỗi relay không được chặn việc gửi cho các session trên node này
+            log.error("relay message to {} failed", destination, e);
+        }
+        return message;
+    }
+
+    // cache trong process (vd GroupMembershipCache) đăng ký để nhận key bị xóa ở node khác
+    public void onInvalidate(String cache, Consumer<String> handler) {
+        invalidationHandlers.put(cache, handler);
+    }
+
+    public void invalidate(String cache, String key) {
+        try {
+            clusterRelay.broadcast(new ClusterEnvelope(INVALIDATE_PREFIX + cache, null,
+                    key.getBytes(StandardCharsets.UTF_8)));
+        } catch (RuntimeException e) {
+            // node khác vẫn tự hết hạn theo TTL của cache
+            log.error("relay invalidation of {} {} failed", cache, key, e);
+        }
+    }
+
+    private void receive(ClusterEnvelope envelope) {
+        if (envelope.getDestination().startsWith(INVALIDATE_PREFIX)) {
+            Consumer<String> handler = invalidationHandlers.get(
+                    envelope.getDestination().substring(INVALIDATE_PREFIX.length()));
+            if (handler != null) handler.accept(new String(envelope.getPayload(), StandardCharsets.UTF_8));
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(envelope.getDestination());
+        if (envelope.getContentType() != null) accessor.setContentType(MimeType.valueOf(envelope.getContentType()));
+        accessor.setHeader(RELAYED_HEADER, clusterRelay.nodeId());
+        accessor.setLeaveMutable(true);
+        brokerChannel.getObject().send(MessageBuilder.createMessage(envelope.getPayload(), accessor.getMessageHeaders()));
+    }
+
+    /**
+     * /user/queue/..., /user/topic/... => user là principal của session (đăng nhập qua CONNECT),
+     * client cũ subscribe thẳng /user/{email}/queue/messages => lấy user từ destination
+     */
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        String sessionId = accessor.getSessionId();
+        if (destination == null || sessionId == null || !destination.startsWith(USER_PREFIX)) return;
+        String userId = subscriberOf(accessor, destination);
+        if (userId == null) return;
+        if (!usersBySession.computeIfAbsent(sessionId, key -> ConcurrentHashMap.newKeySet()).add(userId)) return;
+        sessionsByUser.compute(userId, (key, sessions) -> {
+            if (sessions == null) {
+                clusterRelay.registerUser(userId);
+                sessions = new AtomicInteger();
+            }
+            sessions.incrementAndGet();
+            return sessions;
+        });
+    }
+
+    // unsubscribe không mang destination => giữ đăng ký tới khi ngắt kết nối, gửi thừa 1 node không sai
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Set<String> userIds = usersBySession.remove(event.getSessionId());
+        if (userIds == null) return;
+        for (String userId : userIds) {
+            sessionsByUser.computeIfPresent(userId, (key, sessions) -> {
+                if (sessions.decrementAndGet() > 0) return sessions;
+                clusterRelay.unregisterUser(userId);
+                return null;
+            });
+        }
+    }
+
+    private String subscriberOf(StompHeaderAccessor accessor, String destination) {
+        String userId = userOf(destination);
+        if (!PRINCIPAL_DESTINATIONS.contains(userId)) return userId;
+        Principal user = accessor.getUser();
+        return user != null ? user.getName() : null;
+    }
+
+    private String userOf(String destination) {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        return end < 0 ? destination.substring(USER_PREFIX.length()) : destination.substring(USER_PREFIX.length(), end);
+    }
+}
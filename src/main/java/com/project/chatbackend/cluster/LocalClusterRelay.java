@@ -0,0 +1,72 @@
+package com.project.chatbackend.cluster;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * ClusterRelay trong cùng 1 JVM: các node là các application context chạy chung process
+ * (test, chạy thử nhiều node trên 1 máy), dùng chung bảng node và bảng định tuyến tĩnh.
+ * triển khai thật (Redis pub/sub, ...) chỉ cần cài ClusterRelay và khai báo bean
+ */
+public class LocalClusterRelay implements ClusterRelay {
+    private static final Map<String, Consumer<ClusterEnvelope>> NODES = new ConcurrentHashMap<>();
+    private static final Map<String, Set<String>> USER_NODES = new ConcurrentHashMap<>();
+    private final String nodeId;
+
+    public LocalClusterRelay(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void start(Consumer<ClusterEnvelope> listener) {
+        NODES.put(nodeId, listener);
+    }
+
+    @Override
+    public void stop() {
+        NODES.remove(nodeId);
+        USER_NODES.replaceAll((userId, nodes) -> {
+            nodes.remove(nodeId);
+            return nodes;
+        });
+        USER_NODES.values().removeIf(Set::isEmpty);
+    }
+
+    @Override
+    public void publish(String targetNodeId, ClusterEnvelope envelope) {
+        Consumer<ClusterEnvelope> listener = NODES.get(targetNodeId);
+        if (listener != null) listener.accept(envelope);
+    }
+
+    @Override
+    public void broadcast(ClusterEnvelope envelope) {
+        NODES.forEach((id, listener) -> {
+            if (!id.equals(nodeId)) listener.accept(envelope);
+        });
+    }
+
+    @Override
+    public void registerUser(String userId) {
+        USER_NODES.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(nodeId);
+    }
+
+    @Override
+    public void unregisterUser(String userId) {
+        USER_NODES.computeIfPresent(userId, (key, nodes) -> {
+            nodes.remove(nodeId);
+            return nodes.isEmpty() ? null : nodes;
+        });
+    }
+
+    @Override
+    public Set<String> nodesOf(String userId) {
+        return USER_NODES.getOrDefault(userId, Set.of());
+    }
+}
@@ -1,25 +1,80 @@
 package com.project.chatbackend.configs;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+
+/**
+ * chế độ thực thi theo spring.threads.virtual.enabled:
+ * platform (mặc định) => thread pool cố định, queue đầy thì từ chối task;
+ * virtual (Java 21+, Tomcat cũng chạy trên virtual thread) => mỗi task 1 virtual thread,
+ * giới hạn số task chạy đồng thời, vượt giới hạn thì bên gửi chờ thay vì bị từ chối
+ */
 @Configuration
 @EnableAsync
+@EnableScheduling
 @EnableRetry
 public class AsyncConfig {
     @Bean(name = "asyncExecutor")
-    public ThreadPoolTaskExecutor asyncExecutor() {
+    @ConditionalOnThreading(Threading.PLATFORM)
+    public ThreadPoolTaskExecutor asyncExecutor(MeterRegistry meterRegistry) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
         executor.setMaxPoolSize(10);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("Async-");
+        // queue đầy => vẫn ném lỗi như mặc định nhưng đếm lại để theo dõi
+        // (queue depth, active threads do actuator tự đăng ký: executor.*{name=asyncExecutor})
+        Counter rejected = Counter.builder("chat.executor.rejected")
+                .tag("name", "asyncExecutor")
+                .register(meterRegistry);
+        RejectedExecutionHandler abort = new ThreadPoolExecutor.AbortPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            abort.rejectedExecution(task, pool);
+        });
         executor.initialize();
         return executor;
     }
 
+    @Bean(name = "asyncExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public AsyncTaskExecutor virtualAsyncExecutor(
+            @Value("${chat.execution.virtual.max-concurrency:200}") int maxConcurrency,
+            MeterRegistry meterRegistry) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("Async-");
+        executor.setVirtualThreads(true);
+        // semaphore thay cho queue: đủ maxConcurrency task đang chạy thì thread gửi task phải chờ
+        executor.setConcurrencyLimit(maxConcurrency);
+        AtomicInteger inFlight = new AtomicInteger();
+        Gauge.builder("chat.executor.in-flight", inFlight, AtomicInteger::get)
+                .tag("name", "asyncExecutor")
+                .register(meterRegistry);
+        executor.setTaskDecorator(task -> () -> {
+            inFlight.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        });
+        return executor;
+    }
+
 }
@@ -0,0 +1,73 @@
+package com.project.chatbackend.configs;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.chatbackend.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String USERS = "users";
+    @Value("${cache.users.max-size:10000}")
+    private long usersMaxSize;
+    // save chỉ xóa cache ở node hiện tại, node khác có thể đọc user cũ (friends, block_ids)
+    // tối đa bằng TTL => giữ TTL ngắn khi chạy nhiều instance
+    @Value("${cache.users.ttl-minutes:1}")
+    private long usersTtlMinutes;
+
+    // recordStats => actuator tự đăng ký metrics cache.gets{result=hit|miss}, cache.evictions
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(USERS) {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new CopyingCaffeineCache(name, cache, isAllowNullValues());
+            }
+        };
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .maximumSize(usersMaxSize)
+                .expireAfterWrite(Duration.ofMinutes(usersTtlMinutes))
+                .recordStats());
+        cacheManager.setAllowNullValues(false);
+        return cacheManager;
+    }
+
+    /**
+     * User là object mutable => lưu bản sao khi put và trả bản sao khi đọc,
+     * caller sửa rồi save không làm thay đổi giá trị các request khác đang dùng
+     */
+    static class CopyingCaffeineCache extends CaffeineCache {
+        CopyingCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache,
+                             boolean allowNullValues) {
+            super(name, cache, allowNullValues);
+        }
+
+        @Override
+        protected Object lookup(Object key) {
+            return copy(super.lookup(key));
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            super.put(key, copy(value));
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            return super.putIfAbsent(key, copy(value));
+        }
+
+        private static Object copy(Object value) {
+            return value instanceof User user ? user.copy() : value;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.project.chatbackend.configs;
+
+import com.project.chatbackend.cluster.ClusterRelay;
+import com.project.chatbackend.cluster.ClusterRelayBridge;
+import com.project.chatbackend.cluster.LocalClusterRelay;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.MessageChannel;
+
+import java.util.UUID;
+
+/**
+ * chat.cluster.relay:
+ * - none (mặc định): 1 instance, không chuyển message giữa các node
+ * - local: LocalClusterRelay, các node chạy chung 1 JVM (test)
+ * - custom: tự khai báo bean ClusterRelay (Redis pub/sub, ...)
+ * chỉ dùng khi chat.broker.mode=simple, chế độ relay đã có broker ngoài lo việc này
+ */
+@Configuration
+@ConditionalOnExpression("'${chat.broker.mode:simple}' == 'simple' and '${chat.cluster.relay:none}' != 'none'")
+public class ClusterRelayConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "chat.cluster.relay", havingValue = "local")
+    public ClusterRelay localClusterRelay(@Value("${chat.cluster.node-id:}") String nodeId) {
+        return new LocalClusterRelay(nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId);
+    }
+
+    @Bean
+    public ClusterRelayBridge clusterRelayBridge(ClusterRelay clusterRelay,
+                                                 @Qualifier("brokerChannel") ObjectProvider<MessageChannel> brokerChannel) {
+        return new ClusterRelayBridge(clusterRelay, brokerChannel);
+    }
+}
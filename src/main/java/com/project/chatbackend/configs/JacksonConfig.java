@@ -0,0 +1,28 @@
+package com.project.chatbackend.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+/**
+ * ObjectMapper dùng chung cho REST, STOMP và các chỗ cần parse json trong service,
+ * ObjectMapper thread-safe sau khi cấu hình xong nên chỉ tạo 1 lần
+ */
+@Configuration
+public class JacksonConfig {
+
+    @Bean
+    @Primary
+    public ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).build();
+    }
+
+    // STOMP vẫn gửi ngày giờ dạng mảng số như trước để client websocket không phải đổi
+    @Bean
+    public ObjectMapper stompObjectMapper(ObjectMapper objectMapper) {
+        return objectMapper.copy().enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
@@ -0,0 +1,139 @@
+package com.project.chatbackend.configs;
+
+import com.project.chatbackend.models.*;
+import org.bson.Document;
+import org.springframework.core.convert.TypeDescriptor;
+import org.springframework.core.convert.converter.GenericConverter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * chuyển MessageContent <-> bson không qua mapping phản chiếu và không ghi _class:
+ * - TextContent: chuỗi
+ * - FileObject: {_t: "f", filename, fileKey, fileExtension, filePath, size}
+ * - FileGroupContent: mảng các file (không có _t)
+ * - CallInfo: {_t: "c", startTime, endTime, duration, callStatus}
+ * document cũ (có _class, không có _t) vẫn đọc được
+ */
+public final class MessageContentConverters {
+    private static final String TYPE_KEY = "_t";
+    private static final String FILE = "f";
+    private static final String CALL = "c";
+
+    private MessageContentConverters() {
+    }
+
+    public static List<GenericConverter> converters() {
+        return List.of(new MessageContentWriter(), new MessageContentReader());
+    }
+
+    @WritingConverter
+    public static class MessageContentWriter implements GenericConverter {
+        @Override
+        public Set<ConvertiblePair> getConvertibleTypes() {
+            return Set.of(
+                    new ConvertiblePair(TextContent.class, String.class),
+                    new ConvertiblePair(FileObject.class, Document.class),
+                    new ConvertiblePair(FileGroupContent.class, List.class),
+                    new ConvertiblePair(CallInfo.class, Document.class)
+            );
+        }
+
+        @Override
+        public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
+            if (source instanceof TextContent text) return text.getText();
+            if (source instanceof FileObject file) return writeFile(file).append(TYPE_KEY, FILE);
+            if (source instanceof FileGroupContent group) {
+                return group.getFiles().stream().map(MessageContentConverters::writeFile).toList();
+            }
+            if (source instanceof CallInfo call) {
+                return new Document(TYPE_KEY, CALL)
+                        .append("startTime", toDate(call.getStartTime()))
+                        .append("endTime", toDate(call.getEndTime()))
+                        .append("duration", call.getDuration())
+                        .append("callStatus", call.getCallStatus() == null ? null : call.getCallStatus().name());
+            }
+            return null;
+        }
+    }
+
+    @ReadingConverter
+    public static class MessageContentReader implements GenericConverter {
+        @Override
+        public Set<ConvertiblePair> getConvertibleTypes() {
+            return Set.of(
+                    new ConvertiblePair(String.class, MessageContent.class),
+                    new ConvertiblePair(Document.class, MessageContent.class),
+                    new ConvertiblePair(List.class, MessageContent.class)
+            );
+        }
+
+        @Override
+        public Object convert(Object source, TypeDescriptor sourceType, TypeDescriptor targetType) {
+            if (source instanceof String text) return new TextContent(text);
+            if (source instanceof List<?> files) {
+                return new FileGroupContent(files.stream()
+                        .filter(Document.class::isInstance)
+                        .map(file -> readFile((Document) file))
+                        .toList());
+            }
+            if (source instanceof Document document) {
+                return isCall(document) ? readCall(document) : readFile(document);
+            }
+            return null;
+        }
+    }
+
+    private static Document writeFile(FileObject file) {
+        return new Document()
+                .append("filename", file.getFilename())
+                .append("fileKey", file.getFileKey())
+                .append("fileExtension", file.getFileExtension())
+                .append("filePath", file.getFilePath())
+                .append("size", file.getSize());
+    }
+
+    private static FileObject readFile(Document document) {
+        Number size = document.get("size", Number.class);
+        return FileObject.builder()
+                .filename(document.getString("filename"))
+                .fileKey(document.getString("fileKey"))
+                .fileExtension(document.getString("fileExtension"))
+                .filePath(document.getString("filePath"))
+                .size(size == null ? 0 : size.longValue())
+                .build();
+    }
+
+    private static boolean isCall(Document document) {
+        Object type = document.get(TYPE_KEY);
+        if (type != null) return CALL.equals(type);
+        // document cũ ghi _class đầy đủ
+        return document.containsKey("callStatus")
+                || String.valueOf(document.get("_class")).endsWith("CallInfo");
+    }
+
+    private static CallInfo readCall(Document document) {
+        Number duration = document.get("duration", Number.class);
+        String callStatus = document.getString("callStatus");
+        return CallInfo.builder()
+                .startTime(toLocalDateTime(document.getDate("startTime")))
+                .endTime(toLocalDateTime(document.getDate("endTime")))
+                .duration(duration == null ? 0 : duration.longValue())
+                .callStatus(callStatus == null ? null : CallStatus.valueOf(callStatus))
+                .build();
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return time == null ? null : Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
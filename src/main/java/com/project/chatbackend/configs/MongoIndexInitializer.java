@@ -0,0 +1,95 @@
+package com.project.chatbackend.configs;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * tạo các index được khai báo trên model (@Indexed, @CompoundIndex) khi khởi động
+ * và kiểm tra query plan của các truy vấn thường dùng, log cảnh báo nếu còn COLLSCAN
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+    private final MongoTemplate mongoTemplate;
+    private final MongoMappingContext mongoMappingContext;
+    @Value("${mongodb.index.explain-hot-queries:true}")
+    private boolean explainHotQueries;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initIndexes() {
+        IndexResolver indexResolver = new MongoPersistentEntityIndexResolver(mongoMappingContext);
+        for (MongoPersistentEntity<?> entity : mongoMappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) continue;
+            IndexOperations indexOperations = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition index : indexResolver.resolveIndexFor(entity.getTypeInformation())) {
+                try {
+                    // createIndex không làm gì nếu index đã tồn tại
+                    indexOperations.ensureIndex(index);
+                } catch (Exception e) {
+                    log.warn("cannot create index {} on {}: {}",
+                            index.getIndexKeys(), entity.getCollection(), e.getMessage());
+                }
+            }
+        }
+        if (explainHotQueries) explainHotQueries();
+    }
+
+    private void explainHotQueries() {
+        // RoomRepository
+        explain("rooms", new Document("sender_id", "").append("receiver_id", ""), null);
+        explain("rooms", new Document("sender_id", ""), new Document("time", -1));
+        explain("rooms", new Document("room_id", "").append("sender_id", ""), null);
+        // MessageRepository
+        explain("messages", new Document("room_id", "").append("message_status", "SENT"), null);
+        explain("messages", new Document("room_id", ""), new Document("send_date", -1).append("_id", -1));
+        // TokenRepository
+        explain("tokens", new Document("access_token", ""), null);
+        explain("tokens", new Document("refresh_token", ""), null);
+        explain("tokens", new Document("user", ""), null);
+    }
+
+    private void explain(String collection, Document filter, Document sort) {
+        Document find = new Document("find", collection).append("filter", filter);
+        if (sort != null) find.append("sort", sort);
+        try {
+            Document result = mongoTemplate.getDb().runCommand(
+                    new Document("explain", find).append("verbosity", "queryPlanner"));
+            Object queryPlanner = result.get("queryPlanner");
+            if (containsStage(queryPlanner, "COLLSCAN")) {
+                log.warn("COLLSCAN on {} filter={} sort={}", collection, filter.keySet(),
+                        sort == null ? "{}" : sort.keySet());
+            }
+        } catch (Exception e) {
+            log.warn("cannot explain query on {}: {}", collection, e.getMessage());
+        }
+    }
+
+    private boolean containsStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) return true;
+            for (Object value : document.values()) {
+                if (containsStage(value, stage)) return true;
+            }
+        } else if (plan instanceof List<?> list) {
+            for (Object value : list) {
+                if (containsStage(value, stage)) return true;
+            }
+        }
+        return false;
+    }
+}
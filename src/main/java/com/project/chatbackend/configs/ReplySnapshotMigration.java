@@ -0,0 +1,101 @@
+package com.project.chatbackend.configs;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import com.project.chatbackend.models.ReplySnapshot;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * chuyển messages_parent dạng Message lồng nhau (dữ liệu cũ) sang dạng ReplySnapshot.
+ * chạy một lần, đánh dấu bằng marker trong collection migrations: truy vấn $exists không có index
+ * nên không quét lại cả collection messages mỗi lần khởi động.
+ * chỉ xử lý document còn field của Message đầy đủ nên bị ngắt giữa chừng thì chạy lại cũng không sao
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReplySnapshotMigration {
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER_ID = "reply_snapshot";
+    private static final int BATCH_SIZE = 500;
+    private static final List<String> SNAPSHOT_FIELDS = List.of(
+            "_id", "sender_id", "sender_name", "sender_avatar", "content", "message_type", "send_date");
+    private final MongoTemplate mongoTemplate;
+    @Value("${migration.reply-snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Async("asyncExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrate() {
+        if (!enabled) return;
+        Query marker = new Query(Criteria.where("_id").is(MARKER_ID));
+        if (mongoTemplate.exists(marker, MIGRATIONS)) return;
+        MongoCollection<Document> messages = mongoTemplate.getCollection("messages");
+        Bson legacyParent = Filters.or(
+                Filters.exists("messages_parent.messages_parent"),
+                Filters.exists("messages_parent.room_id"),
+                Filters.exists("messages_parent.emojis")
+        );
+        List<WriteModel<Document>> updates = new ArrayList<>();
+        long migrated = 0;
+        try (MongoCursor<Document> cursor = messages.find(legacyParent)
+                .projection(Projections.include("messages_parent"))
+                .batchSize(BATCH_SIZE)
+                .iterator()) {
+            while (cursor.hasNext()) {
+                Document message = cursor.next();
+                Document parent = message.get("messages_parent", Document.class);
+                updates.add(new UpdateOneModel<>(Filters.eq("_id", message.get("_id")),
+                        Updates.set("messages_parent", toSnapshot(parent))));
+                if (updates.size() == BATCH_SIZE) {
+                    migrated += flush(messages, updates);
+                }
+            }
+        }
+        migrated += flush(messages, updates);
+        mongoTemplate.upsert(marker, new Update().set("completed_at", LocalDateTime.now()), MIGRATIONS);
+        log.info("migrated {} reply parents to snapshot", migrated);
+    }
+
+    private Document toSnapshot(Document parent) {
+        Document snapshot = new Document();
+        for (String field : SNAPSHOT_FIELDS) {
+            if (parent.containsKey(field)) snapshot.put(field, parent.get(field));
+        }
+        Object content = parent.get("content");
+        if (content instanceof String text && text.length() > ReplySnapshot.PREVIEW_LENGTH) {
+            content = text.substring(0, ReplySnapshot.PREVIEW_LENGTH);
+        }
+        snapshot.put("content", content);
+        return snapshot;
+    }
+
+    private long flush(MongoCollection<Document> messages, List<WriteModel<Document>> updates) {
+        if (updates.isEmpty()) return 0;
+        long modified = messages.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+        updates.clear();
+        return modified;
+    }
+}
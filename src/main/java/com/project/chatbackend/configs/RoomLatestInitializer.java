@@ -0,0 +1,49 @@
+package com.project.chatbackend.configs;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * dữ liệu cũ chưa có room_latest => tính một lần từ collection messages.
+ * đánh dấu đã chạy bằng marker trong collection migrations, không dựa vào việc room_latest
+ * đã có document (tin nhắn gửi trong lúc deploy sẽ làm bỏ qua backfill)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoomLatestInitializer {
+    private static final String MIGRATIONS = "migrations";
+    private static final String MARKER_ID = "room_latest_backfill";
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Query marker = new Query(Criteria.where("_id").is(MARKER_ID));
+        if (mongoTemplate.exists(marker, MIGRATIONS)) return;
+        List<Document> pipeline = List.of(
+                new Document("$sort", new Document("room_id", 1).append("send_date", -1).append("_id", -1)),
+                new Document("$group", new Document("_id", "$room_id")
+                        .append("message_id", new Document("$first", new Document("$toString", "$_id")))
+                        .append("sender_id", new Document("$first", "$sender_id"))
+                        .append("receiver_id", new Document("$first", "$receiver_id"))
+                        .append("send_date", new Document("$first", "$send_date"))),
+                new Document("$merge", new Document("into", "room_latest")
+                        .append("whenMatched", "keepExisting"))
+        );
+        mongoTemplate.getCollection("messages").aggregate(pipeline).allowDiskUse(true).toCollection();
+        // keepExisting: document do tin nhắn mới ghi trong lúc chạy luôn mới hơn kết quả backfill
+        mongoTemplate.upsert(marker, new Update().set("completed_at", LocalDateTime.now()), MIGRATIONS);
+        log.info("room_latest backfilled");
+    }
+}
@@ -0,0 +1,41 @@
+package com.project.chatbackend.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * đo thời gian mọi method của IMessageService, IGroupService, IRoomService,
+ * chỉ các lời gọi qua proxy (từ controller/service khác) mới được đo
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class ServiceMetricsAspect {
+    public static final String SERVICE_TIMER = "chat.service.invocations";
+    private final MeterRegistry meterRegistry;
+
+    @Around("execution(* com.project.chatbackend.services.IMessageService.*(..)) || " +
+            "execution(* com.project.chatbackend.services.IGroupService.*(..)) || " +
+            "execution(* com.project.chatbackend.services.IRoomService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(SERVICE_TIMER)
+                    .tag("service", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.project.chatbackend.configs;
+
+import com.project.chatbackend.services.GroupBroadcaster;
+import com.project.chatbackend.services.GroupMembershipCache;
+import com.project.chatbackend.services.JwtService;
+import com.project.chatbackend.services.UserDetailService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * xác thực STOMP trên clientInboundChannel:
+ * - CONNECT bắt buộc có header Authorization: Bearer {jwt} => gắn principal (email) cho session
+ * - SUBSCRIBE /topic/group.{id} (và .v2) chỉ cho thành viên nhóm
+ * - SUBSCRIBE /user/{id}/... chỉ khi id là user của session hoặc nhóm mà user là thành viên,
+ *   /user/queue/..., /user/topic/... luôn là hàng đợi của chính user
+ * groupDeliveryFilter() đặt trên clientOutboundChannel, bỏ message nhóm gửi tới session đã bị xóa khỏi nhóm
+ */
+@Component
+@RequiredArgsConstructor
+public class StompAuthInterceptor implements ChannelInterceptor {
+    private static final String BEARER = "Bearer ";
+    private static final String USER_PREFIX = "/user/";
+    private static final Set<String> PRINCIPAL_DESTINATIONS = Set.of("queue", "topic");
+    private final JwtService jwtService;
+    private final UserDetailService userDetailService;
+    private final GroupMembershipCache groupMembershipCache;
+    private final Map<String, String> usersBySession = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) return message;
+        switch (accessor.getCommand()) {
+            case CONNECT -> authenticate(accessor);
+            case SUBSCRIBE -> authorizeSubscribe(accessor);
+            case DISCONNECT -> {
+                if (accessor.getSessionId() != null) usersBySession.remove(accessor.getSessionId());
+            }
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    public ChannelInterceptor groupDeliveryFilter() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+                if (destination == null || !destination.startsWith(GroupBroadcaster.GROUP_TOPIC_PREFIX)) return message;
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                String userId = sessionId != null ? usersBySession.get(sessionId) : null;
+                return isMember(GroupBroadcaster.groupOf(destination), userId) ? message : null;
+            }
+        };
+    }
+
+    private void authenticate(StompHeaderAccessor accessor) {
+        String authHeader = accessor.getFirstNativeHeader("Authorization");
+        if (authHeader == null || !authHeader.startsWith(BEARER)) throw new BadCredentialsException("missing token");
+        String jwt = authHeader.substring(BEARER.length());
+        try {
+            Claims claims = jwtService.extractAllClaims(jwt);
+            UserDetails userDetails = userDetailService.loadUserByUsername(claims.getSubject());
+            if (!jwtService.isTokenValid(jwt, claims, userDetails)) throw new BadCredentialsException("invalid token");
+            Principal user = new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+            accessor.setUser(user);
+            usersBySession.put(accessor.getSessionId(), user.getName());
+        } catch (JwtException e) {
+            throw new BadCredentialsException("invalid token", e);
+        }
+    }
+
+    private void authorizeSubscribe(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null) return;
+        Principal user = accessor.getUser();
+        String userId = user != null ? user.getName() : null;
+        if (destination.startsWith(GroupBroadcaster.GROUP_TOPIC_PREFIX)) {
+            if (!isMember(GroupBroadcaster.groupOf(destination), userId))
+                throw new AccessDeniedException("not a member of group");
+        } else if (destination.startsWith(USER_PREFIX)) {
+            // /user/{groupId}/queue/messages của client cũ kiểm tra giống kênh nhóm
+            String target = targetOf(destination);
+            if (userId == null || (!PRINCIPAL_DESTINATIONS.contains(target)
+                    && !target.equals(userId) && !isMember(target, userId)))
+                throw new AccessDeniedException("cannot subscribe to " + destination);
+        }
+    }
+
+    // /user/{id}/queue/messages => id
+    private String targetOf(String destination) {
+        int end = destination.indexOf('/', USER_PREFIX.length());
+        return end < 0 ? destination.substring(USER_PREFIX.length()) : destination.substring(USER_PREFIX.length(), end);
+    }
+
+    private boolean isMember(String groupId, String userId) {
+        if (userId == null) return false;
+        return groupMembershipCache.get(groupId)
+                .map(group -> group.isMember(userId))
+                .orElse(false);
+    }
+}
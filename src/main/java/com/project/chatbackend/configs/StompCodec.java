@@ -0,0 +1,64 @@
+package com.project.chatbackend.configs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * định dạng payload STOMP hỗ trợ, client chọn theo header content-type lúc CONNECT
+ */
+public enum StompCodec {
+    JSON(MimeTypeUtils.APPLICATION_JSON, new JsonFactory()),
+    CBOR(MimeType.valueOf("application/cbor"), new CBORFactory()),
+    SMILE(MimeType.valueOf("application/x-jackson-smile"), new SmileFactory());
+
+    private final MimeType mimeType;
+    private final JsonFactory factory;
+
+    StompCodec(MimeType mimeType, JsonFactory factory) {
+        this.mimeType = mimeType;
+        this.factory = factory;
+    }
+
+    public MimeType getMimeType() {
+        return mimeType;
+    }
+
+    public JsonFactory getFactory() {
+        return factory;
+    }
+
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    // chuyển payload JSON đã encode sang định dạng này bằng cách chép từng token, không dựng lại object
+    public byte[] fromJson(byte[] json) {
+        if (this == JSON) return json;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length);
+        try (JsonParser parser = JSON.factory.createParser(json);
+             JsonGenerator generator = factory.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static Optional<StompCodec> of(String contentType) {
+        if (contentType == null) return Optional.empty();
+        MimeType mimeType = MimeType.valueOf(contentType);
+        return Arrays.stream(values()).filter(codec -> codec.mimeType.equalsTypeAndSubtype(mimeType)).findFirst();
+    }
+}
@@ -0,0 +1,127 @@
+package com.project.chatbackend.configs;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * chọn định dạng payload theo session:
+ * - CONNECT qua /ws-native với header content-type: application/cbor | application/x-jackson-smile
+ *   => message server gửi cho session được chuyển từ JSON sang định dạng đó
+ * - SockJS chỉ truyền text nên /ws luôn dùng JSON
+ * message nhị phân gửi đi với content-type application/octet-stream (để Spring gửi frame binary)
+ * và header codec cho biết định dạng thật; SEND từ client đọc theo content-type qua converter tương ứng
+ */
+@Component
+public class StompCodecInterceptor implements ChannelInterceptor {
+    public static final String CODEC_HEADER = "codec";
+    private static final String NATIVE_TRANSPORT = "chatNativeTransport";
+    private final Map<String, StompCodec> codecBySession = new ConcurrentHashMap<>();
+    // broker gửi cùng 1 mảng byte cho mọi session => nhớ lần chuyển gần nhất của mỗi định dạng
+    private final Map<StompCodec, AtomicReference<Transcoded>> lastTranscoded = new EnumMap<>(StompCodec.class);
+
+    public StompCodecInterceptor() {
+        for (StompCodec codec : StompCodec.values()) lastTranscoded.put(codec, new AtomicReference<>());
+    }
+
+    // đánh dấu session đến từ endpoint websocket thuần
+    public HandshakeInterceptor nativeTransportMarker() {
+        return new HandshakeInterceptor() {
+            @Override
+            public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                           WebSocketHandler wsHandler, Map<String, Object> attributes) {
+                attributes.put(NATIVE_TRANSPORT, Boolean.TRUE);
+                return true;
+            }
+
+            @Override
+            public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Exception exception) {
+            }
+        };
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null || accessor.getSessionId() == null) return message;
+        switch (accessor.getCommand()) {
+            case CONNECT -> {
+                Map<String, Object> attributes = accessor.getSessionAttributes();
+                boolean nativeTransport = attributes != null && Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT));
+                StompCodec.of(accessor.getFirstNativeHeader(StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER))
+                        .filter(codec -> codec.isBinary() && nativeTransport)
+                        .ifPresent(codec -> codecBySession.put(accessor.getSessionId(), codec));
+            }
+            case DISCONNECT -> codecBySession.remove(accessor.getSessionId());
+            default -> {
+            }
+        }
+        return message;
+    }
+
+    public ChannelInterceptor transcoder() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                MessageHeaders headers = message.getHeaders();
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+                StompCodec codec = sessionId != null ? codecBySession.get(sessionId) : null;
+                if (codec == null
+                        || SimpMessageHeaderAccessor.getMessageType(headers) != SimpMessageType.MESSAGE
+                        || !(message.getPayload() instanceof byte[] payload)
+                        || payload.length == 0
+                        || !MimeTypeUtils.APPLICATION_JSON.isCompatibleWith(contentTypeOf(headers))) {
+                    return message;
+                }
+                SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+                accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+                accessor.setNativeHeader(CODEC_HEADER, codec.getMimeType().toString());
+                return MessageBuilder.createMessage(transcode(payload, codec), accessor.getMessageHeaders());
+            }
+        };
+    }
+
+    private byte[] transcode(byte[] json, StompCodec codec) {
+        AtomicReference<Transcoded> last = lastTranscoded.get(codec);
+        Transcoded cached = last.get();
+        if (cached != null && cached.getSource() == json) return cached.getResult();
+        byte[] result = codec.fromJson(json);
+        last.set(new Transcoded(json, result));
+        return result;
+    }
+
+    // header content-type có thể là MimeType hoặc String tuỳ nơi tạo message
+    private static MimeType contentTypeOf(MessageHeaders headers) {
+        Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+        if (contentType instanceof MimeType mimeType) return mimeType;
+        return contentType instanceof String value ? MimeTypeUtils.parseMimeType(value) : null;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class Transcoded {
+        private final byte[] source;
+        private final byte[] result;
+    }
+}
@@ -0,0 +1,45 @@
+package com.project.chatbackend.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * đếm số message gửi vào broker theo destination (SimpMessagingTemplate, @SendTo),
+ * destination được rút gọn để không sinh 1 series cho mỗi user/nhóm
+ */
+public class StompMetricsInterceptor implements ChannelInterceptor {
+    public static final String SENT_COUNTER = "chat.stomp.sent";
+    private final MeterRegistry meterRegistry;
+
+    public StompMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+        if (destination == null) return;
+        // message /user/... được UserDestinationMessageHandler gửi lại lần 2 sau khi resolve session => bỏ qua
+        if (message.getHeaders().containsKey(SimpMessageHeaderAccessor.ORIGINAL_DESTINATION)) return;
+        Counter.builder(SENT_COUNTER)
+                .tag("destination", normalize(destination))
+                .tag("result", sent && ex == null ? "success" : "failure")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // /user/{email}/queue/messages => /user/queue/messages, /topic/group.{id} => /topic/group.*
+    static String normalize(String destination) {
+        if (destination.startsWith("/user/")) {
+            int next = destination.indexOf('/', "/user/".length());
+            return next < 0 ? "/user" : "/user" + destination.substring(next);
+        }
+        int lastSlash = destination.lastIndexOf('/');
+        int dot = destination.indexOf('.', lastSlash);
+        return dot < 0 ? destination : destination.substring(0, dot) + ".*";
+    }
+}
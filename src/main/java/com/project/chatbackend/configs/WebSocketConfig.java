@@ -1,12 +1,16 @@
 package com.project.chatbackend.configs;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-import lombok.RequiredArgsConstructor;
+import com.project.chatbackend.cluster.ClusterRelayBridge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.converter.DefaultContentTypeResolver;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.socket.config.annotation.*;
@@ -16,20 +20,77 @@ import java.util.List;
 
 @Configuration
 @EnableWebSocketMessageBroker
-@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    private final ObjectMapper stompObjectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ObjectProvider<ClusterRelayBridge> clusterRelayBridge;
+    private final StompAuthInterceptor stompAuthInterceptor;
+    private final StompCodecInterceptor stompCodecInterceptor;
+    // simple: broker trong process (mặc định), relay: broker STOMP ngoài (RabbitMQ, ActiveMQ) dùng chung cho các node
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+    @Value("${chat.broker.relay.host:localhost}")
+    private String relayHost;
+    @Value("${chat.broker.relay.port:61613}")
+    private int relayPort;
+    @Value("${chat.broker.relay.login:guest}")
+    private String relayLogin;
+    @Value("${chat.broker.relay.passcode:guest}")
+    private String relayPasscode;
+
+    public WebSocketConfig(@Qualifier("stompObjectMapper") ObjectMapper stompObjectMapper,
+                           MeterRegistry meterRegistry,
+                           ObjectProvider<ClusterRelayBridge> clusterRelayBridge,
+                           StompAuthInterceptor stompAuthInterceptor,
+                           StompCodecInterceptor stompCodecInterceptor) {
+        this.stompObjectMapper = stompObjectMapper;
+        this.meterRegistry = meterRegistry;
+        this.clusterRelayBridge = clusterRelayBridge;
+        this.stompAuthInterceptor = stompAuthInterceptor;
+        this.stompCodecInterceptor = stompCodecInterceptor;
+    }
 
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         registry.addEndpoint("/ws").setAllowedOriginPatterns("*").withSockJS();
+        // websocket thuần, không SockJS: cho phép payload nhị phân (CBOR/Smile)
+        registry.addEndpoint("/ws-native").setAllowedOriginPatterns("*")
+                .addInterceptors(stompCodecInterceptor.nativeTransportMarker());
     }
 
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/user");
+        if ("relay".equals(brokerMode)) {
+            // /user/... được dịch sang /queue/...-user{session} theo principal của session,
+            // user ở node khác được tìm qua user registry phát trên broker
+            registry.enableStompBrokerRelay("/topic", "/queue")
+                    .setRelayHost(relayHost)
+                    .setRelayPort(relayPort)
+                    .setClientLogin(relayLogin)
+                    .setClientPasscode(relayPasscode)
+                    .setSystemLogin(relayLogin)
+                    .setSystemPasscode(relayPasscode)
+                    .setUserDestinationBroadcast("/topic/unresolved-user")
+                    .setUserRegistryBroadcast("/topic/user-registry");
+        } else {
+            registry.enableSimpleBroker("/topic", "/user");
+        }
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
+        registry.configureBrokerChannel().interceptors(new StompMetricsInterceptor(meterRegistry));
+        ClusterRelayBridge bridge = clusterRelayBridge.getIfAvailable();
+        if (bridge != null) registry.configureBrokerChannel().interceptors(bridge);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor, stompCodecInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthInterceptor.groupDeliveryFilter(), stompCodecInterceptor.transcoder());
     }
 
     @Override
@@ -37,11 +98,17 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         DefaultContentTypeResolver resolver = new DefaultContentTypeResolver();
         resolver.setDefaultMimeType(MimeTypeUtils.APPLICATION_JSON);
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        converter.setObjectMapper(objectMapper);
+        converter.setObjectMapper(stompObjectMapper);
         converter.setContentTypeResolver(resolver);
         messageConverters.add(converter);
+        // SEND từ client /ws-native với content-type application/cbor, application/x-jackson-smile
+        for (StompCodec codec : StompCodec.values()) {
+            if (!codec.isBinary()) continue;
+            MappingJackson2MessageConverter binaryConverter = new MappingJackson2MessageConverter(codec.getMimeType());
+            binaryConverter.setObjectMapper(stompObjectMapper.copyWith(codec.getFactory().copy()));
+            binaryConverter.setStrictContentTypeMatch(true);
+            messageConverters.add(binaryConverter);
+        }
         return false;
     }
 
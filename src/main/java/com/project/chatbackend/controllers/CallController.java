@@ -6,6 +6,8 @@ import com.project.chatbackend.calls.Call;
 import com.project.chatbackend.calls.CandidateMessage;
 import com.project.chatbackend.calls.OfferMessage;
 import com.project.chatbackend.responses.TypingChat;
+import com.project.chatbackend.services.GroupBroadcaster;
+import com.project.chatbackend.services.GroupMembershipCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.handler.annotation.MessageMapping;
@@ -19,6 +21,8 @@ import org.springframework.stereotype.Controller;
 public class CallController {
 
     private final SimpMessagingTemplate simpMessagingTemplate;
+    private final GroupMembershipCache groupMembershipCache;
+    private final GroupBroadcaster groupBroadcaster;
 
     @MessageMapping("/call")
     public void Call(@Payload Call call){
@@ -48,6 +52,10 @@ public class CallController {
 
     @MessageMapping("/typing")
     public void typing(@Payload TypingChat typingChat) {
+        if (groupMembershipCache.get(typingChat.getReceiverId()).isPresent()) {
+            groupBroadcaster.broadcast(typingChat.getReceiverId(), typingChat);
+            return;
+        }
         simpMessagingTemplate
                 .convertAndSendToUser(typingChat.getReceiverId(),
                         "/queue/messages",typingChat);
@@ -1,9 +1,11 @@
 package com.project.chatbackend.controllers;
 
 import com.project.chatbackend.responses.UserNotify;
+import com.project.chatbackend.services.GroupBroadcaster;
+import com.project.chatbackend.services.GroupMembershipCache;
+import com.project.chatbackend.services.NotificationDispatcher;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -13,14 +15,17 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/v1/notify")
 @RequiredArgsConstructor
 public class ChanelController {
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final NotificationDispatcher notificationDispatcher;
+    private final GroupMembershipCache groupMembershipCache;
+    private final GroupBroadcaster groupBroadcaster;
 
     @PostMapping("/user")
     public ResponseEntity<?> processMessage(@RequestBody UserNotify useNotify) {
-            simpMessagingTemplate.convertAndSendToUser(
-                useNotify.getReceiverId(), "/queue/messages",
-                useNotify
-            );
+            if (groupMembershipCache.get(useNotify.getReceiverId()).isPresent()) {
+                groupBroadcaster.publish(useNotify.getReceiverId(), useNotify);
+                return ResponseEntity.ok("send notify to user successfully");
+            }
+            notificationDispatcher.notifyUser(useNotify.getReceiverId(), useNotify);
             return ResponseEntity.ok("send notify to user successfully");
     }
 }
@@ -1,7 +1,6 @@
 package com.project.chatbackend.controllers;
 
 import com.project.chatbackend.exceptions.*;
-import com.project.chatbackend.models.Group;
 import com.project.chatbackend.models.Message;
 import com.project.chatbackend.requests.*;
 import com.project.chatbackend.responses.MessageResponse;
@@ -18,8 +17,8 @@ import org.springframework.web.bind.annotation.*;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -54,15 +53,31 @@ public class MessageController {
 
 
 
+    @GetMapping("/{roomId}/history")
+    public ResponseEntity<?> getHistory(@PathVariable String roomId,
+                                        @RequestParam String senderId,
+                                        @RequestParam(required = false) String before,
+                                        @RequestParam(defaultValue = "40") int limit,
+                                        HttpServletRequest request
+    ) {
+        try {
+            authService.AuthenticationToken(request, senderId);
+            return ResponseEntity.ok(messageService.getHistory(senderId, roomId, before, limit));
+        } catch (PermissionAccessDenied e) {
+            return ResponseEntity.status(406).body(e.getMessage());
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("cursor invalid");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/chat")
     public ResponseEntity<?> sendMessage(@ModelAttribute ChatRequest chatRequest, HttpServletRequest httpServletRequest) {
         try {
             authService.AuthenticationToken(httpServletRequest, chatRequest.getSenderId());
-            Map<String, Object> mapResult = messageService.saveMessage(chatRequest);
-            Message messageTmp = (Message) mapResult.get("message");
-            Group group = (Group) mapResult.get("group");
-            messageService.saveMessage(chatRequest, messageTmp, group);
-            return ResponseEntity.ok(messageTmp);
+            Message message = messageService.sendMessage(chatRequest);
+            return ResponseEntity.ok(message);
         } catch (DataNotFoundException e) {
             return ResponseEntity.badRequest().body(e.getMessage());
         } catch (PermissionAccessDenied e) {
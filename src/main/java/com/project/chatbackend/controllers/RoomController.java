@@ -1,21 +1,16 @@
 package com.project.chatbackend.controllers;
 
-import com.project.chatbackend.exceptions.DataNotFoundException;
 import com.project.chatbackend.exceptions.PermissionAccessDenied;
-import com.project.chatbackend.models.Room;
-import com.project.chatbackend.responses.PageRoomResponse;
-import com.project.chatbackend.responses.RoomResponse;
 import com.project.chatbackend.services.AuthService;
+import com.project.chatbackend.services.IInboxService;
 import com.project.chatbackend.services.IRoomService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
 import java.util.Optional;
 
 @RestController
@@ -23,11 +18,13 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class RoomController {
     private final IRoomService roomService;
+    private final IInboxService inboxService;
     private final AuthService authService;
     @GetMapping("/all/{senderId}")
     public ResponseEntity<?> getAllRoomBySenderId(@PathVariable String senderId,
                                                   @RequestParam Optional<Integer> page,
                                                   @RequestParam Optional<Integer> limit,
+                                                  @RequestParam Optional<Boolean> denormalized,
                                                   HttpServletRequest httpServletRequest) {
         int pageNum = page.orElse(0);
         int limitNum = limit.orElse(20);
@@ -35,22 +32,7 @@ public class RoomController {
                 Sort.by("time").descending());
         try {
             authService.AuthenticationToken(httpServletRequest, senderId);
-            Page<Room> rooms = roomService.findAllBySenderId(senderId, pageRequest);
-            List<RoomResponse> roomResponses = rooms
-                    .getContent()
-                    .stream()
-                    .map(room -> {
-                        try {
-                            return roomService.mapRoomToRoomResponse(room);
-                        } catch (DataNotFoundException e) {
-                            throw new RuntimeException(e);
-                        }
-                    }).toList();
-            PageRoomResponse pageRoomResponse = PageRoomResponse.builder()
-                    .roomResponses(roomResponses)
-                    .totalPage(rooms.getTotalPages())
-                    .build();
-            return ResponseEntity.ok(pageRoomResponse);
+            return ResponseEntity.ok(inboxService.getInbox(senderId, pageRequest, denormalized.orElse(false)));
         } catch (PermissionAccessDenied e) {
             return ResponseEntity.status(406).body(e.getMessage());
         }
@@ -2,15 +2,23 @@ package com.project.chatbackend.models;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 import java.time.LocalDateTime;
+import java.util.Optional;
 
 
 @Builder
 @Data
-public class CallInfo {
+@Jacksonized
+public final class CallInfo implements MessageContent {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private long duration;
     private CallStatus callStatus;
+
+    @Override
+    public Optional<CallInfo> asCallInfo() {
+        return Optional.of(this);
+    }
 }
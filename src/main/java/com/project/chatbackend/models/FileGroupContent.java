@@ -0,0 +1,25 @@
+package com.project.chatbackend.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.util.List;
+
+// nhiều ảnh gửi trong 1 tin nhắn, json là mảng FileObject như trước
+@Getter
+@EqualsAndHashCode
+public final class FileGroupContent implements MessageContent {
+    private final List<FileObject> files;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public FileGroupContent(List<FileObject> files) {
+        this.files = List.copyOf(files);
+    }
+
+    @JsonValue
+    public List<FileObject> getFiles() {
+        return files;
+    }
+}
@@ -2,10 +2,12 @@ package com.project.chatbackend.models;
 
 import lombok.Builder;
 import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
 
 @Data
 @Builder
-public class FileObject {
+@Jacksonized
+public final class FileObject implements MessageContent {
     private String filename;
     private String fileKey;
     private String fileExtension;
@@ -0,0 +1,56 @@
+package com.project.chatbackend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * bản chụp bất biến các thông tin phân quyền của nhóm,
+ * dùng cho kiểm tra quyền trên luồng gửi tin nhắn mà không cần truy vấn db
+ */
+@Getter
+@AllArgsConstructor
+public class GroupSnapshot {
+    private final String id;
+    private final Set<String> members;
+    private final Set<String> admins;
+    private final String owner;
+    private final GroupStatus groupStatus;
+    private final SendMessagePermission sendMessagePermission;
+
+    public static GroupSnapshot from(Group group) {
+        return new GroupSnapshot(
+                group.getId(),
+                toSet(group.getMembers()),
+                toSet(group.getAdmins()),
+                group.getOwner(),
+                group.getGroupStatus(),
+                group.getSendMessagePermission()
+        );
+    }
+
+    public boolean isMember(String userId) {
+        return members.contains(userId);
+    }
+
+    public boolean isOwner(String userId) {
+        return owner != null && owner.equals(userId);
+    }
+
+    public boolean isAdminOrOwner(String userId) {
+        return admins.contains(userId) || isOwner(userId);
+    }
+
+    public boolean isInactive() {
+        return groupStatus == GroupStatus.INACTIVE;
+    }
+
+    private static Set<String> toSet(List<String> values) {
+        if (values == null) return Collections.emptySet();
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+}
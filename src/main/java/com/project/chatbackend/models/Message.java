@@ -1,8 +1,11 @@
 package com.project.chatbackend.models;
 
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
@@ -10,6 +13,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Document(collection = "messages")
+@CompoundIndexes({
+        @CompoundIndex(name = "room_send_date_id", def = "{'room_id': 1, 'send_date': -1, '_id': -1}"),
+        @CompoundIndex(name = "room_status", def = "{'room_id': 1, 'message_status': 1}")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -24,7 +31,8 @@ public class Message {
     private String senderId;
     @Field(name = "receiver_id")
     private String receiverId;
-    private Object content;
+    @JsonDeserialize(using = MessageContentDeserializer.class)
+    private MessageContent content;
     @Field(name = "send_date")
 //    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime sendDate;
@@ -37,7 +45,7 @@ public class Message {
     @Field(name = "number_of_emojis")
     private int numberOfEmojis;
     @Field(name = "messages_parent")
-    private Message messagesParent;
+    private ReplySnapshot messagesParent;
     @Field(name = "message_status")
     private MessageStatus messageStatus;
     @Field(name = "hidden_sender_side")
@@ -0,0 +1,19 @@
+package com.project.chatbackend.models;
+
+import java.util.Optional;
+
+/**
+ * nội dung của tin nhắn: text, 1 file, nhóm ảnh hoặc thông tin cuộc gọi
+ * lưu trong mongo qua MessageContentConverters (text lưu dạng chuỗi, file/cuộc gọi có tag _t ngắn)
+ */
+public sealed interface MessageContent permits TextContent, FileObject, FileGroupContent, CallInfo {
+    // nội dung hiển thị ở latest_message của room
+    default String toPreview(MessageType messageType) {
+        return messageType == null ? "" : messageType.toString();
+    }
+
+    // chỉ CallInfo trả về chính nó => nơi xử lý cuộc gọi không phải kiểm tra kiểu rồi ép kiểu
+    default Optional<CallInfo> asCallInfo() {
+        return Optional.empty();
+    }
+}
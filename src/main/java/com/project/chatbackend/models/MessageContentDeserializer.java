@@ -0,0 +1,27 @@
+package com.project.chatbackend.models;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+
+/**
+ * json của content không có tag: chuỗi => text, mảng => nhóm ảnh,
+ * object có callStatus => cuộc gọi, còn lại => file
+ */
+public class MessageContentDeserializer extends JsonDeserializer<MessageContent> {
+    @Override
+    public MessageContent deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        JsonNode node = parser.readValueAsTree();
+        if (node.isArray()) return context.readTreeAsValue(node, FileGroupContent.class);
+        if (node.isObject()) {
+            return node.has("callStatus")
+                    ? context.readTreeAsValue(node, CallInfo.class)
+                    : context.readTreeAsValue(node, FileObject.class);
+        }
+        if (node.isNull() || node.isMissingNode()) return null;
+        return new TextContent(node.asText());
+    }
+}
@@ -0,0 +1,39 @@
+package com.project.chatbackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * việc cập nhật room + thông báo STOMP của 1 tin nhắn, được ghi trước khi lưu message ở trạng thái SENT
+ * và xóa khi đã gửi xong; còn lại sau next_attempt_at => OutboxDispatcher gửi lại
+ */
+@Document(collection = "outbox")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class OutboxEvent {
+    @Id
+    private String eventId;
+    @Field(name = "message_id")
+    private String messageId;
+    @Field(name = "sender_id")
+    private String senderId;
+    @Field(name = "sender_name")
+    private String senderName;
+    private int attempts;
+    @Field(name = "next_attempt_at")
+    @Indexed
+    private LocalDateTime nextAttemptAt;
+    @Field(name = "claim_token")
+    @Indexed(sparse = true)
+    private String claimToken;
+    @Field(name = "created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,53 @@
+package com.project.chatbackend.models;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.*;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * thông tin rút gọn của tin nhắn được trả lời, nhúng trong Message.messagesParent
+ * tên field (json và mongo) giống Message để client cũ vẫn đọc được
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ReplySnapshot {
+    public static final int PREVIEW_LENGTH = 100;
+    private String id;
+    @Field(name = "sender_id")
+    private String senderId;
+    @Field(name = "sender_name")
+    private String senderName;
+    @Field(name = "sender_avatar")
+    private String senderAvatar;
+    // text bị cắt còn PREVIEW_LENGTH ký tự, file/cuộc gọi giữ nguyên object
+    @JsonDeserialize(using = MessageContentDeserializer.class)
+    private MessageContent content;
+    @Field(name = "message_type")
+    private MessageType messageType;
+    @Field(name = "send_date")
+    private LocalDateTime sendDate;
+
+    public static ReplySnapshot from(Message message) {
+        return ReplySnapshot.builder()
+                .id(message.getId())
+                .senderId(message.getSenderId())
+                .senderName(message.getSenderName())
+                .senderAvatar(message.getSenderAvatar())
+                .content(preview(message.getContent()))
+                .messageType(message.getMessageType())
+                .sendDate(message.getSendDate())
+                .build();
+    }
+
+    public static MessageContent preview(MessageContent content) {
+        if (content instanceof TextContent text && text.getText().length() > PREVIEW_LENGTH) {
+            return new TextContent(text.getText().substring(0, PREVIEW_LENGTH));
+        }
+        return content;
+    }
+}
@@ -0,0 +1,29 @@
+package com.project.chatbackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * jti của access token đã bị thu hồi, tự xóa (ttl index) khi token hết hạn
+ */
+@Document(collection = "revoked_tokens")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RevokedToken {
+    @Id
+    private String jti;
+    @Field(name = "revoked_at")
+    @Indexed
+    private LocalDateTime revokedAt;
+    @Field(name = "expires_at")
+    @Indexed(expireAfterSeconds = 0)
+    private LocalDateTime expiresAt;
+}
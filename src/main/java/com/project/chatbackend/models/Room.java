@@ -2,6 +2,8 @@ package com.project.chatbackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -9,6 +11,11 @@ import org.springframework.data.mongodb.core.mapping.Field;
 import java.time.LocalDateTime;
 
 @Document(collection = "rooms")
+@CompoundIndexes({
+        @CompoundIndex(name = "sender_receiver", def = "{'sender_id': 1, 'receiver_id': 1}"),
+        @CompoundIndex(name = "sender_time", def = "{'sender_id': 1, 'time': -1}"),
+        @CompoundIndex(name = "room_sender", def = "{'room_id': 1, 'sender_id': 1}")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -24,14 +31,27 @@ public class Room {
     private String senderId;
     @Field(name = "receiver_id")
     private String receiverId;
+    // tên, avatar của user/nhóm nhận, lưu sẵn để trang inbox không phải join
+    @Field(name = "receiver_name")
+    private String receiverName;
+    @Field(name = "receiver_avatar")
+    private String receiverAvatar;
     @Field(name = "room_type")
     private RoomType roomType;
     @Field(name = "latest_message")
     private String latestMessage;
+    // id tin nhắn đang hiển thị ở latest_message
+    @Field(name = "latest_message_id")
+    private String latestMessageId;
     @Field(name = "number_of_unread_message")
     private int numberOfUnreadMessage;
     private LocalDateTime time;
     private boolean sender;
+    // watermark đã xem: mọi tin nhắn có send_date <= last_seen_at coi như đã xem, trả về cho client trong RoomResponse
+    @Field(name = "last_seen_at")
+    private LocalDateTime lastSeenAt;
+    @Field(name = "last_seen_message_id")
+    private String lastSeenMessageId;
     @Field(name = "created_at")
     private LocalDateTime createdAt;
     @Field(name = "deleted_at")
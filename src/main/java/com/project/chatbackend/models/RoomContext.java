@@ -0,0 +1,21 @@
+package com.project.chatbackend.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * thông tin cố định của một cuộc trò chuyện giữa sender và receiver,
+ * roomId và roomType không đổi sau khi room được tạo nên có thể cache
+ */
+@Getter
+@AllArgsConstructor
+@Builder
+public class RoomContext {
+    private final String roomId;
+    private final RoomType roomType;
+
+    public boolean isGroupChat() {
+        return roomType == RoomType.GROUP_CHAT;
+    }
+}
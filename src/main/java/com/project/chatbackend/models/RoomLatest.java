@@ -0,0 +1,30 @@
+package com.project.chatbackend.models;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+
+/**
+ * con trỏ tới tin nhắn mới nhất của một cuộc trò chuyện, mỗi room_id một document
+ */
+@Document(collection = "room_latest")
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RoomLatest {
+    @Id
+    private String roomId;
+    @Field(name = "message_id")
+    private String messageId;
+    @Field(name = "sender_id")
+    private String senderId;
+    @Field(name = "receiver_id")
+    private String receiverId;
+    @Field(name = "send_date")
+    private LocalDateTime sendDate;
+}
@@ -0,0 +1,33 @@
+package com.project.chatbackend.models;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+// json là chuỗi text như trước khi có MessageContent
+@Getter
+@EqualsAndHashCode
+public final class TextContent implements MessageContent {
+    private final String text;
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public TextContent(String text) {
+        this.text = text;
+    }
+
+    public static TextContent of(String text) {
+        return text == null ? null : new TextContent(text);
+    }
+
+    @Override
+    public String toPreview(MessageType messageType) {
+        return text;
+    }
+
+    @JsonValue
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -2,6 +2,7 @@ package com.project.chatbackend.models;
 
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.DocumentReference;
 import org.springframework.data.mongodb.core.mapping.Field;
@@ -18,14 +19,19 @@ public class Token {
     @Id
     private String id;
     @DocumentReference
+    @Indexed
     private User user;
+    @Indexed
     @Field(name = "access_token")
     private String accessToken;
+    // jti của access token hiện tại, dùng để thu hồi token
+    private String jti;
     @Field(name = "access_token_type")
     private String tokenType;
     @Field(name = "expiration_date_access_token")
     private LocalDateTime expirationDateAccessToken;
     private boolean revoked;
+    @Indexed
     @Field(name = "refresh_token")
     private String refreshToken;
     @Field(name = "expiration_date_refresh_token")
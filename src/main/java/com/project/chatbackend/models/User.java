@@ -16,7 +16,7 @@ import java.util.Set;
 @Document(collection = "users")
 @Getter @Setter
 @AllArgsConstructor @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class User {
     private String name;
     private boolean gender;
@@ -48,5 +48,12 @@ public class User {
     @Field(name = "not_receive_message_to_stranger")
     private boolean notReceiveMessageToStranger;
 
-
+    // bản sao có collection riêng => sửa bản sao không ảnh hưởng object đang nằm trong cache
+    public User copy() {
+        return toBuilder()
+                .friends(friends == null ? null : new ArrayList<>(friends))
+                .images(images == null ? null : new ArrayList<>(images))
+                .blockIds(blockIds == null ? null : new HashSet<>(blockIds))
+                .build();
+    }
 }
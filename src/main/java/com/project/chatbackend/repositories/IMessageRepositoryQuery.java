@@ -4,8 +4,12 @@ import com.project.chatbackend.models.Message;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.Date;
+import java.util.List;
 
 public interface IMessageRepositoryQuery {
     Page<Message> findByContentContaining(String roomId, String search, Date startDate, Date endDate, String senderId, Pageable pageable);
+    List<Message> findHistoryBefore(String roomId, LocalDateTime sendDate, String id, int limit);
+    long markSeenUpTo(String roomId, String viewerId, LocalDateTime watermark, LocalDateTime seenDate);
 }
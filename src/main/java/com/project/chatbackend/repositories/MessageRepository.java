@@ -11,5 +11,4 @@ import java.util.List;
 public interface MessageRepository extends MongoRepository<Message, String> {
     Page<Message> getAllByRoomId(String roomId, PageRequest pageRequest);
     List<Message> getAllByRoomIdAndMessageStatus(String roomId, MessageStatus messageStatus);
-    Message findTopByOrderBySendDateDesc();
 }
@@ -1,13 +1,17 @@
 package com.project.chatbackend.repositories;
 
 import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.MessageStatus;
 import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.*;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
@@ -55,6 +59,40 @@ public class MessageRepositoryQuery implements IMessageRepositoryQuery {
         return new PageImpl<>(result, pageable, totalCount);
     }
 
+    /**
+     * phân trang theo keyset (send_date, _id) giảm dần, dùng index room_id + send_date + _id
+     * sendDate == null => trang mới nhất
+     */
+    @Override
+    public List<Message> findHistoryBefore(String roomId, LocalDateTime sendDate, String id, int limit) {
+        Query query = new Query();
+        query.addCriteria(Criteria.where("room_id").is(roomId));
+        if (sendDate != null) {
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("send_date").lt(sendDate),
+                    Criteria.where("send_date").is(sendDate).and("_id").lt(new ObjectId(id))
+            ));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "send_date", "_id"));
+        query.limit(limit);
+        return mongoTemplate.find(query, Message.class);
+    }
+
+    /**
+     * đánh dấu đã xem mọi tin nhắn người khác gửi tới watermark bằng 1 lệnh updateMany
+     */
+    @Override
+    public long markSeenUpTo(String roomId, String viewerId, LocalDateTime watermark, LocalDateTime seenDate) {
+        Query query = new Query(Criteria.where("room_id").is(roomId)
+                .and("message_status").in(MessageStatus.SENT, MessageStatus.RECEIVED)
+                .and("send_date").lte(watermark)
+                .and("sender_id").ne(viewerId));
+        Update update = new Update()
+                .set("message_status", MessageStatus.SEEN)
+                .set("seen_date", seenDate);
+        return mongoTemplate.updateMulti(query, update, Message.class).getModifiedCount();
+    }
+
     public Date setEndOfDay(Date date) {
         Calendar calendar = Calendar.getInstance();
         calendar.setTime(date);
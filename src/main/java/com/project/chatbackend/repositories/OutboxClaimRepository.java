@@ -0,0 +1,16 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.OutboxEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OutboxClaimRepository {
+    // giữ tối đa limit event đã đến hạn tới leaseUntil, event instance khác đang giữ không bị lấy
+    List<OutboxEvent> claimBatch(LocalDateTime now, LocalDateTime leaseUntil, int limit);
+
+    // đẩy lên đầu hàng đợi, không tính là 1 lần thử
+    void dueNow(String eventId);
+
+    void retryAt(String eventId, LocalDateTime nextAttemptAt);
+}
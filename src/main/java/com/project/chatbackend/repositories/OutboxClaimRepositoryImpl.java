@@ -0,0 +1,50 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class OutboxClaimRepositoryImpl implements OutboxClaimRepository {
+    private final MongoTemplate mongoTemplate;
+
+    // 3 lệnh cho cả batch: lấy id đến hạn, gắn claim_token (chỉ event vẫn còn đến hạn), đọc lại theo token
+    @Override
+    public List<OutboxEvent> claimBatch(LocalDateTime now, LocalDateTime leaseUntil, int limit) {
+        Query due = new Query(Criteria.where("next_attempt_at").lte(now))
+                .with(Sort.by(Sort.Direction.ASC, "next_attempt_at"))
+                .limit(limit);
+        due.fields().include("_id");
+        List<Object> ids = mongoTemplate.find(due, OutboxEvent.class).stream()
+                .map(event -> (Object) event.getEventId())
+                .toList();
+        if (ids.isEmpty()) return List.of();
+        String claimToken = new ObjectId().toHexString();
+        mongoTemplate.updateMulti(
+                new Query(Criteria.where("_id").in(ids).and("next_attempt_at").lte(now)),
+                new Update().set("next_attempt_at", leaseUntil).set("claim_token", claimToken),
+                OutboxEvent.class);
+        return mongoTemplate.find(new Query(Criteria.where("claim_token").is(claimToken)), OutboxEvent.class);
+    }
+
+    @Override
+    public void dueNow(String eventId) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                new Update().set("next_attempt_at", LocalDateTime.now()), OutboxEvent.class);
+    }
+
+    @Override
+    public void retryAt(String eventId, LocalDateTime nextAttemptAt) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(eventId)),
+                new Update().set("next_attempt_at", nextAttemptAt).inc("attempts", 1),
+                OutboxEvent.class);
+    }
+}
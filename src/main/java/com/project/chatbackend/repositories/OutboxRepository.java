@@ -0,0 +1,7 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.OutboxEvent;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface OutboxRepository extends MongoRepository<OutboxEvent, String>, OutboxClaimRepository {
+}
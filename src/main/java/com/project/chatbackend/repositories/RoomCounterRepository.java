@@ -0,0 +1,32 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Room;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * các thao tác cập nhật tóm tắt room (tin nhắn mới nhất, số tin chưa đọc)
+ * bằng update nguyên tử thay vì đọc room lên rồi save lại cả document
+ */
+public interface RoomCounterRepository {
+    // room của người gửi: sender = true, number_of_unread_message = 0, trả về room sau khi cập nhật
+    Room touchLatest(String roomId, String senderId, String latestMessage, LocalDateTime time);
+    // room của những người còn lại trong cuộc trò chuyện: sender = false, $inc number_of_unread_message
+    void incrementUnread(String roomId, String senderId, String latestMessage, LocalDateTime time);
+    void resetUnread(String roomId, String userId);
+    // dời watermark đã xem của user (không lùi lại) và reset số tin chưa đọc
+    void markSeen(String roomId, String userId, String lastSeenMessageId, LocalDateTime lastSeenAt);
+    void replaceLatestMessage(String roomId, String userId, String latestMessage);
+    // excludedUserId == null => cập nhật tất cả room của cuộc trò chuyện
+    void replaceLatestMessageExcept(String roomId, String excludedUserId, String latestMessage);
+    // thu hồi tin nhắn mới nhất: room của những người còn lại đổi preview và sender = false
+    void revokeLatest(String roomId, String senderId, String latestMessage);
+    // user/nhóm đổi tên, avatar => cập nhật mọi room có receiver_id tương ứng
+    void updateReceiverProfile(String receiverId, String receiverName, String receiverAvatar);
+    // lưu receiver_name, receiver_avatar đã resolve của các room bằng 1 lệnh bulkWrite
+    void saveReceiverProfiles(Collection<Room> rooms);
+    // gọi lại với cùng messageId (outbox gửi lại) không tăng số tin chưa đọc lần 2, không làm lùi preview
+    Room fanOut(String roomId, String senderId, Collection<String> receiverIds, String messageId,
+                String senderPreview, String receiverPreview, LocalDateTime time);
+}
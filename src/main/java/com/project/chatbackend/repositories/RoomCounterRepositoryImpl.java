@@ -0,0 +1,166 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Room;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@RequiredArgsConstructor
+public class RoomCounterRepositoryImpl implements RoomCounterRepository {
+    // id các tin nhắn đã tăng unread, chỉ dùng trong fanOut nên không map vào Room
+    private static final String FAN_OUT_IDS = "fan_out_message_ids";
+    private static final int RECENT_FAN_OUT_IDS = 20;
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public Room touchLatest(String roomId, String senderId, String latestMessage, LocalDateTime time) {
+        Update update = new Update()
+                .set("latest_message", latestMessage)
+                .set("time", time)
+                .set("sender", true)
+                .set("number_of_unread_message", 0);
+        return mongoTemplate.findAndModify(roomOf(roomId, senderId), update,
+                FindAndModifyOptions.options().returnNew(true), Room.class);
+    }
+
+    @Override
+    public void incrementUnread(String roomId, String senderId, String latestMessage, LocalDateTime time) {
+        Query query = new Query(Criteria.where("room_id").is(roomId).and("sender_id").ne(senderId));
+        mongoTemplate.updateMulti(query, receiverUpdate(latestMessage, time), Room.class);
+    }
+
+    @Override
+    public void resetUnread(String roomId, String userId) {
+        mongoTemplate.updateFirst(roomOf(roomId, userId),
+                new Update().set("number_of_unread_message", 0), Room.class);
+    }
+
+    @Override
+    public void markSeen(String roomId, String userId, String lastSeenMessageId, LocalDateTime lastSeenAt) {
+        Query query = roomOf(roomId, userId).addCriteria(new Criteria().orOperator(
+                Criteria.where("last_seen_at").is(null),
+                Criteria.where("last_seen_at").lte(lastSeenAt)
+        ));
+        Update update = new Update()
+                .set("last_seen_at", lastSeenAt)
+                .set("last_seen_message_id", lastSeenMessageId)
+                .set("number_of_unread_message", 0);
+        if (mongoTemplate.updateFirst(query, update, Room.class).getMatchedCount() == 0) {
+            // đã xem tới tin nhắn mới hơn => chỉ reset số tin chưa đọc
+            resetUnread(roomId, userId);
+        }
+    }
+
+    @Override
+    public void replaceLatestMessage(String roomId, String userId, String latestMessage) {
+        mongoTemplate.updateFirst(roomOf(roomId, userId),
+                new Update().set("latest_message", latestMessage), Room.class);
+    }
+
+    @Override
+    public void replaceLatestMessageExcept(String roomId, String excludedUserId, String latestMessage) {
+        Criteria criteria = Criteria.where("room_id").is(roomId);
+        if (excludedUserId != null) criteria.and("sender_id").ne(excludedUserId);
+        mongoTemplate.updateMulti(new Query(criteria),
+                new Update().set("latest_message", latestMessage), Room.class);
+    }
+
+    @Override
+    public void revokeLatest(String roomId, String senderId, String latestMessage) {
+        Query query = new Query(Criteria.where("room_id").is(roomId).and("sender_id").ne(senderId));
+        Update update = new Update()
+                .set("latest_message", latestMessage)
+                .set("sender", false);
+        mongoTemplate.updateMulti(query, update, Room.class);
+    }
+
+    @Override
+    public void updateReceiverProfile(String receiverId, String receiverName, String receiverAvatar) {
+        Update update = new Update()
+                .set("receiver_name", receiverName)
+                .set("receiver_avatar", receiverAvatar);
+        mongoTemplate.updateMulti(new Query(Criteria.where("receiver_id").is(receiverId)), update, Room.class);
+    }
+
+    @Override
+    public void saveReceiverProfiles(Collection<Room> rooms) {
+        if (rooms.isEmpty()) return;
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Room.class);
+        for (Room room : rooms) {
+            Update update = new Update()
+                    .set("receiver_name", room.getReceiverName())
+                    .set("receiver_avatar", room.getReceiverAvatar());
+            bulkOperations.updateOne(new Query(Criteria.where("_id").is(room.getId())), update);
+        }
+        bulkOperations.execute();
+    }
+
+    /**
+     * cập nhật room của tất cả người nhận bằng 1 lệnh bulkWrite,
+     * room của người gửi được cập nhật riêng để trả về room mới cho thông báo SUCCESS.
+     * số tin chưa đọc và preview là 2 thao tác riêng:
+     * - tăng unread 1 lần cho mỗi message nhờ danh sách id đã fan-out (giữ RECENT_FAN_OUT_IDS id gần nhất),
+     *   không phụ thuộc thứ tự gửi lại
+     * - preview (latest_message, time) chỉ ghi đè khi message không cũ hơn preview hiện tại,
+     *   outbox gửi lại event cũ sau khi đã có tin mới không làm lùi preview
+     */
+    @Override
+    public Room fanOut(String roomId, String senderId, Collection<String> receiverIds, String messageId,
+                       String senderPreview, String receiverPreview, LocalDateTime time) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Room.class);
+        int operations = 0;
+        for (String receiverId : receiverIds) {
+            if (receiverId.equals(senderId)) continue;
+            Query unreadQuery = roomOf(roomId, receiverId)
+                    .addCriteria(Criteria.where(FAN_OUT_IDS).ne(messageId));
+            Update unreadUpdate = new Update()
+                    .inc("number_of_unread_message", 1)
+                    .push(FAN_OUT_IDS).slice(-RECENT_FAN_OUT_IDS).each(messageId);
+            bulkOperations.updateOne(unreadQuery, unreadUpdate);
+            Update previewUpdate = new Update()
+                    .set("latest_message", receiverPreview)
+                    .set("latest_message_id", messageId)
+                    .set("time", time)
+                    .set("sender", false);
+            bulkOperations.updateOne(notNewerThan(roomOf(roomId, receiverId), time), previewUpdate);
+            operations++;
+        }
+        if (operations > 0) bulkOperations.execute();
+        Update senderUpdate = new Update()
+                .set("latest_message", senderPreview)
+                .set("latest_message_id", messageId)
+                .set("time", time)
+                .set("sender", true)
+                .set("number_of_unread_message", 0);
+        Room room = mongoTemplate.findAndModify(notNewerThan(roomOf(roomId, senderId), time), senderUpdate,
+                FindAndModifyOptions.options().returnNew(true), Room.class);
+        // room đã có tin mới hơn => giữ nguyên, trả về trạng thái hiện tại
+        return room != null ? room : mongoTemplate.findOne(roomOf(roomId, senderId), Room.class);
+    }
+
+    private Query notNewerThan(Query query, LocalDateTime time) {
+        return query.addCriteria(new Criteria().orOperator(
+                Criteria.where("time").is(null),
+                Criteria.where("time").lte(time)
+        ));
+    }
+
+    private Query roomOf(String roomId, String userId) {
+        return new Query(Criteria.where("room_id").is(roomId).and("sender_id").is(userId));
+    }
+
+    private Update receiverUpdate(String latestMessage, LocalDateTime time) {
+        return new Update()
+                .set("latest_message", latestMessage)
+                .set("time", time)
+                .set("sender", false)
+                .inc("number_of_unread_message", 1);
+    }
+}
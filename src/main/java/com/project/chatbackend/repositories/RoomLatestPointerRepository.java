@@ -0,0 +1,8 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Message;
+
+public interface RoomLatestPointerRepository {
+    // chỉ dời con trỏ khi message mới hơn tin nhắn mới nhất hiện tại của room
+    void advance(Message message);
+}
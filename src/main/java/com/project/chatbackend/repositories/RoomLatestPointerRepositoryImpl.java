@@ -0,0 +1,35 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.RoomLatest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+@RequiredArgsConstructor
+public class RoomLatestPointerRepositoryImpl implements RoomLatestPointerRepository {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void advance(Message message) {
+        Query query = new Query(Criteria.where("_id").is(message.getRoomId())
+                .orOperator(
+                        Criteria.where("send_date").lt(message.getSendDate()),
+                        Criteria.where("send_date").is(message.getSendDate())
+                                .and("message_id").lt(message.getId())
+                ));
+        Update update = new Update()
+                .set("message_id", message.getId())
+                .set("sender_id", message.getSenderId())
+                .set("receiver_id", message.getReceiverId())
+                .set("send_date", message.getSendDate());
+        try {
+            mongoTemplate.upsert(query, update, RoomLatest.class);
+        } catch (DuplicateKeyException e) {
+            // room đã có tin nhắn mới hơn => giữ nguyên con trỏ
+        }
+    }
+}
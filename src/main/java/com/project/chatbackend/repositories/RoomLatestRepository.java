@@ -0,0 +1,19 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.RoomLatest;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Optional;
+
+public interface RoomLatestRepository extends MongoRepository<RoomLatest, String>, RoomLatestPointerRepository {
+    default Optional<RoomLatest> findLatestInRoom(String roomId) {
+        return findById(roomId);
+    }
+
+    default boolean isLatestInRoom(Message message) {
+        return findLatestInRoom(message.getRoomId())
+                .map(latest -> latest.getMessageId().equals(message.getId()))
+                .orElse(false);
+    }
+}
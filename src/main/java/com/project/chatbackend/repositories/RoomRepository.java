@@ -8,7 +8,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 import java.util.Optional;
 
-public interface RoomRepository extends MongoRepository<Room, String> {
+public interface RoomRepository extends MongoRepository<Room, String>, RoomCounterRepository {
     Page<Room> findAllBySenderId(String senderId, PageRequest pageRequest);
     List<Room> findAllBySenderId(String senderId);
     Optional<Room> findBySenderIdAndReceiverId(String senderId, String receiverId);
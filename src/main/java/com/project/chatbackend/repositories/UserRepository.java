@@ -1,12 +1,25 @@
 package com.project.chatbackend.repositories;
 
+import com.project.chatbackend.configs.CacheConfig;
 import com.project.chatbackend.models.User;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 
 import java.util.Optional;
 
 public interface UserRepository extends MongoRepository<User, String> {
     Optional<User> findByPhoneNumber(String phoneNumber);
+    @Cacheable(value = CacheConfig.USERS, key = "#p0", unless = "#result == null")
     Optional<User> findByEmail(String email);
     boolean existsByEmail(String email);
+
+    // mọi thay đổi user đều đi qua save/deleteById => xóa cache sau khi ghi
+    @Override
+    @CacheEvict(value = CacheConfig.USERS, key = "#p0.email")
+    <S extends User> S save(S user);
+
+    @Override
+    @CacheEvict(value = CacheConfig.USERS, key = "#p0")
+    void deleteById(String email);
 }
@@ -21,5 +21,7 @@ public class ChatRequest {
     private MultipartFile fileContent;
     private boolean hiddenSenderSide;
     private String messageParent;
+    // id tin nhắn được trả lời, ưu tiên hơn messageParent (json của cả message)
+    private String messageParentId;
 
 }
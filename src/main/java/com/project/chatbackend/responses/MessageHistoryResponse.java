@@ -0,0 +1,15 @@
+package com.project.chatbackend.responses;
+
+import com.project.chatbackend.models.Message;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@Builder
+public class MessageHistoryResponse {
+    private List<Message> messages;
+    // "sendDate,id" của tin nhắn cũ nhất trong trang, null nếu đã hết tin nhắn
+    private String nextCursor;
+}
@@ -0,0 +1,62 @@
+package com.project.chatbackend.responses;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.MessageStatus;
+import com.project.chatbackend.models.Room;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * thông báo giao thức v2 (/queue/events, /topic/group.{id}.v2): chỉ id, trạng thái và các trường thay đổi,
+ * nội dung tin nhắn chỉ gửi kèm khi client chưa có (type.withContent), room chỉ gửi phần thay đổi
+ */
+@Getter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotifyEvent {
+    public static final int VERSION = 2;
+    private final int v = VERSION;
+    private final NotifyEventType type;
+    private final String eventId;
+    private final String senderId;
+    private final String receiverId;
+    private final String roomId;
+    private final String messageId;
+    private final MessageStatus messageStatus;
+    private final Message message;
+    // phần thay đổi của room: tin nhắn mới nhất, số tin chưa đọc, thời gian
+    private final String preview;
+    private final Integer unread;
+    private final LocalDateTime time;
+
+    public static NotifyEvent from(UserNotify notify) {
+        return from(notify, notify.getRoom());
+    }
+
+    public static NotifyEvent from(UserNotify notify, Room room) {
+        NotifyEventType type = NotifyEventType.ofStatus(notify.getStatus());
+        NotifyEventBuilder builder = NotifyEvent.builder()
+                .type(type)
+                .eventId(notify.getEventId())
+                .senderId(notify.getSenderId())
+                .receiverId(notify.getReceiverId());
+        Message message = notify.getMessage();
+        if (message != null) {
+            builder.roomId(message.getRoomId())
+                    .messageId(message.getId())
+                    .messageStatus(message.getMessageStatus());
+            // tin nhắn đã thu hồi chỉ cần trạng thái
+            if (type.isWithContent() && message.getMessageStatus() != MessageStatus.REVOKED) builder.message(message);
+        }
+        if (room != null) {
+            builder.roomId(room.getRoomId())
+                    .preview(room.getLatestMessage())
+                    .unread(room.getNumberOfUnreadMessage())
+                    .time(room.getTime());
+        }
+        return builder.build();
+    }
+}
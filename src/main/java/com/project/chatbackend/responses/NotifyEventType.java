@@ -0,0 +1,54 @@
+package com.project.chatbackend.responses;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * loại sự kiện của NotifyEvent, tên trùng với UserNotify.status,
+ * withContent = true khi client chưa có tin nhắn đó nên phải gửi kèm nội dung
+ */
+public enum NotifyEventType {
+    SENT(true),
+    SUCCESS(false),
+    ERROR(false),
+    SEEN(false),
+    REVOKED_MESSAGE(false),
+    RECEIVED_MESSAGE(false),
+    CREATE_GROUP(true),
+    ADD_MEMBER(true),
+    ADD_MEMBER_GROUP(false),
+    REMOVE_MEMBER(false),
+    REMOVE_MEMBER_GROUP(false),
+    ADD_ADMIN(false),
+    REMOVE_ADMIN(false),
+    REMOVE_GROUP(false),
+    LEAVE(false),
+    MEMBER_LEAVE(false),
+    UPDATE_ADD_MEMBER_PERMISSION(false),
+    UPDATE_ADD_SEND_MESSAGE_PERMISSION(false),
+    CALL_REQUEST(true),
+    ACCEPT_CALL(false),
+    REJECT_CALL(false),
+    CANCEL_CALL(false),
+    END_CALL(false),
+    MISSED_CALL(false),
+    UNKNOWN(false);
+
+    private static final Map<String, NotifyEventType> BY_STATUS = Arrays.stream(values())
+            .collect(Collectors.toMap(Enum::name, Function.identity()));
+    private final boolean withContent;
+
+    NotifyEventType(boolean withContent) {
+        this.withContent = withContent;
+    }
+
+    public boolean isWithContent() {
+        return withContent;
+    }
+
+    public static NotifyEventType ofStatus(String status) {
+        return status == null ? UNKNOWN : BY_STATUS.getOrDefault(status, UNKNOWN);
+    }
+}
@@ -24,4 +24,7 @@ public class RoomResponse {
     private String latestMessage;
     private String avatar;
     private RoomStatus roomStatus;
+    // user đã xem tới tin nhắn này (watermark của room), client dùng để hiển thị trạng thái đã xem
+    private LocalDateTime lastSeenAt;
+    private String lastSeenMessageId;
 }
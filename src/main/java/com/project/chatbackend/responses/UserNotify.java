@@ -13,4 +13,6 @@ public class UserNotify {
     private String status;
     private Message message;
     private Room room;
+    // khóa idempotency: cùng 1 event có thể được gửi lại sau khi instance bị dừng giữa chừng
+    private String eventId;
 }
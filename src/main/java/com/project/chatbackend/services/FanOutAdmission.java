@@ -0,0 +1,157 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.responses.UserNotify;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * kiểm soát việc đưa fan-out/upload vào asyncExecutor:
+ * - mỗi user chỉ có tối đa per-user-limit task đang chạy, vượt thì không chiếm executor của user khác
+ * - bị từ chối (vượt giới hạn user hoặc queue đầy): tin nhắn text ngắn chạy luôn trên thread gọi,
+ *   còn lại để outbox event đến hạn ngay và OutboxDispatcher gửi lại
+ * - upload file không lưu lại được (file tạm ở local) => đánh dấu ERROR và báo cho người gửi
+ */
+@Component
+@Slf4j
+public class FanOutAdmission {
+    private static final String USER_LIMIT = "user_limit";
+    private static final String EXECUTOR_FULL = "executor_full";
+    private static final List<String> OUTCOMES = List.of("caller_runs", "deferred", "failed");
+    private final S3UploadAsync s3UploadAsync;
+    private final MessageRepository messageRepository;
+    private final MessageOutbox messageOutbox;
+    private final NotificationDispatcher notificationDispatcher;
+    // reason + "|" + outcome => counter, đăng ký sẵn 1 lần
+    private final Map<String, Counter> shedCounters = new HashMap<>();
+    private final Map<String, AtomicInteger> inFlightByUser = new ConcurrentHashMap<>();
+    @Value("${chat.admission.per-user-limit:20}")
+    private int perUserLimit;
+    @Value("${chat.admission.caller-runs-max-chars:280}")
+    private int callerRunsMaxChars;
+
+    public FanOutAdmission(S3UploadAsync s3UploadAsync,
+                           MessageRepository messageRepository,
+                           MessageOutbox messageOutbox,
+                           NotificationDispatcher notificationDispatcher,
+                           MeterRegistry meterRegistry) {
+        this.s3UploadAsync = s3UploadAsync;
+        this.messageRepository = messageRepository;
+        this.messageOutbox = messageOutbox;
+        this.notificationDispatcher = notificationDispatcher;
+        for (String reason : List.of(USER_LIMIT, EXECUTOR_FULL)) {
+            for (String outcome : OUTCOMES) {
+                shedCounters.put(reason + "|" + outcome, Counter.builder("chat.admission.shed")
+                        .tag("reason", reason)
+                        .tag("outcome", outcome)
+                        .register(meterRegistry));
+            }
+        }
+    }
+
+    public void deliver(Message message, String senderName, GroupSnapshot group, String eventId) {
+        String userId = message.getSenderId();
+        if (!acquire(userId)) {
+            shed(message, senderName, group, eventId, USER_LIMIT);
+            return;
+        }
+        try {
+            s3UploadAsync.deliverAsync(message, senderName, group, eventId)
+                    .whenComplete((result, e) -> {
+                        release(userId);
+                        if (e != null) log.error("deliver message {} failed", message.getId(), e);
+                    });
+        } catch (TaskRejectedException e) {
+            release(userId);
+            shed(message, senderName, group, eventId, EXECUTOR_FULL);
+        }
+    }
+
+    // upload chỉ được gọi khi đã có slot: caller tạo S3 client, file tạm trong upload nên bị từ chối thì chưa có gì phải dọn
+    public void upload(Message message, Supplier<CompletableFuture<Void>> upload) {
+        String userId = message.getSenderId();
+        if (!acquire(userId)) {
+            count(USER_LIMIT, "failed");
+            markFailed(message);
+            return;
+        }
+        CompletableFuture<Void> future;
+        try {
+            future = upload.get();
+        } catch (TaskRejectedException e) {
+            release(userId);
+            count(EXECUTOR_FULL, "failed");
+            markFailed(message);
+            return;
+        } catch (RuntimeException e) {
+            release(userId);
+            throw e;
+        }
+        future.whenComplete((result, e) -> {
+            release(userId);
+            if (e != null) log.error("upload message {} failed", message.getId(), e);
+        });
+    }
+
+    public void markFailed(Message message) {
+        message.setMessageStatus(MessageStatus.ERROR);
+        messageRepository.save(message);
+        UserNotify error = UserNotify.builder()
+                .status("ERROR")
+                .senderId(message.getSenderId())
+                .receiverId(message.getReceiverId())
+                .message(message)
+                .build();
+        notificationDispatcher.notifyUser(message.getSenderId(), error);
+    }
+
+    private void shed(Message message, String senderName, GroupSnapshot group, String eventId, String reason) {
+        if (isShortText(message)) {
+            count(reason, "caller_runs");
+            s3UploadAsync.deliverNow(message, senderName, group, eventId);
+            return;
+        }
+        count(reason, "deferred");
+        // lưu nội dung trước để dispatcher đọc lại được từ db
+        if (message.getMessageStatus() != MessageStatus.SENT) messageRepository.save(message);
+        messageOutbox.dueNow(eventId);
+    }
+
+    private boolean isShortText(Message message) {
+        return message.getContent() instanceof TextContent text
+                && text.getText().length() <= callerRunsMaxChars;
+    }
+
+    // đếm và kiểm tra giới hạn trong cùng 1 lần compute để không lệch khi xóa counter về 0
+    private boolean acquire(String userId) {
+        boolean[] acquired = new boolean[1];
+        inFlightByUser.compute(userId, (key, inFlight) -> {
+            if (inFlight == null) inFlight = new AtomicInteger();
+            acquired[0] = inFlight.get() < perUserLimit;
+            if (acquired[0]) inFlight.incrementAndGet();
+            return inFlight.get() == 0 ? null : inFlight;
+        });
+        return acquired[0];
+    }
+
+    private void release(String userId) {
+        inFlightByUser.computeIfPresent(userId, (key, inFlight) -> inFlight.decrementAndGet() <= 0 ? null : inFlight);
+    }
+
+    private void count(String reason, String outcome) {
+        shedCounters.get(reason + "|" + outcome).increment();
+    }
+}
@@ -0,0 +1,56 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.responses.NotifyEvent;
+import com.project.chatbackend.responses.UserNotify;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * phát thông báo nhóm lên /topic/group.{id}: payload chỉ serialize 1 lần,
+ * broker gửi cùng mảng byte cho mọi session đã subscribe (quyền subscribe kiểm tra ở StompAuthInterceptor).
+ * NotifyEvent (v2) phát lên /topic/group.{id}.v2 khi nhóm có session subscribe v2
+ */
+@Component
+@RequiredArgsConstructor
+public class GroupBroadcaster {
+    public static final String GROUP_TOPIC_PREFIX = "/topic/group.";
+    public static final String V2_SUFFIX = ".v2";
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final NotifyProtocolRegistry notifyProtocolRegistry;
+    // client cũ subscribe /user/{groupId}/queue/messages, tắt khi mọi client đã chuyển sang topic
+    @Value("${chat.group.legacy-user-destination:true}")
+    private boolean legacyUserDestination;
+    // broker ngoài không resolve được groupId như 1 user => /user/{groupId} thành broadcast unresolved-user tới mọi node
+    @Value("${chat.broker.mode:simple}")
+    private String brokerMode;
+
+    public static String topicOf(String groupId) {
+        return GROUP_TOPIC_PREFIX + groupId;
+    }
+
+    // /topic/group.{id} hoặc /topic/group.{id}.v2 => id
+    public static String groupOf(String destination) {
+        String groupId = destination.substring(GROUP_TOPIC_PREFIX.length());
+        return groupId.endsWith(V2_SUFFIX) ? groupId.substring(0, groupId.length() - V2_SUFFIX.length()) : groupId;
+    }
+
+    public void publish(String groupId, UserNotify notify) {
+        broadcast(groupId, notify);
+        if (notifyProtocolRegistry.groupWantsV2(groupId)) {
+            simpMessagingTemplate.convertAndSend(topicOf(groupId) + V2_SUFFIX, NotifyEvent.from(notify));
+        }
+    }
+
+    // payload không có bản v2 (TypingChat, ...): chỉ gửi lên /topic/group.{id} và kênh cũ
+    public void broadcast(String groupId, Object payload) {
+        Message<?> encoded = simpMessagingTemplate.getMessageConverter().toMessage(payload, null);
+        if (encoded == null) throw new IllegalArgumentException("cannot encode " + payload.getClass());
+        simpMessagingTemplate.send(topicOf(groupId), encoded);
+        if (legacyUserDestination && !"relay".equals(brokerMode)) {
+            simpMessagingTemplate.send("/user/" + groupId + "/queue/messages", encoded);
+        }
+    }
+}
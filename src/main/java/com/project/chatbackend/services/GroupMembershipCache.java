@@ -0,0 +1,62 @@
+package com.project.chatbackend.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.project.chatbackend.cluster.ClusterRelayBridge;
+import com.project.chatbackend.models.GroupSnapshot;
+import com.project.chatbackend.repositories.GroupRepository;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * cache GroupSnapshot theo groupId, room id không phải nhóm được cache dạng Optional.empty()
+ * GroupService phải gọi invalidate sau mỗi lần thay đổi nhóm.
+ * có chat.cluster.relay => invalidate được gửi tới các node khác qua ClusterRelayBridge,
+ * không có (1 node, hoặc chat.broker.mode=relay) => node khác chỉ cập nhật sau TTL
+ */
+@Component
+public class GroupMembershipCache {
+    private static final String CACHE_NAME = "groups";
+    private final LoadingCache<String, Optional<GroupSnapshot>> snapshots;
+    private final ObjectProvider<ClusterRelayBridge> clusterRelayBridge;
+    private final List<Consumer<String>> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    public GroupMembershipCache(GroupRepository groupRepository,
+                                ObjectProvider<ClusterRelayBridge> clusterRelayBridge,
+                                @Value("${cache.groups.max-size:10000}") long maxSize,
+                                @Value("${cache.groups.ttl-seconds:30}") long ttlSeconds) {
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                // thành viên bị xóa ở node khác vẫn qua được StompAuthInterceptor tối đa bằng ttl => giữ ngắn
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build(groupId -> groupRepository.findById(groupId).map(GroupSnapshot::from));
+        this.clusterRelayBridge = clusterRelayBridge;
+        clusterRelayBridge.ifAvailable(bridge -> bridge.onInvalidate(CACHE_NAME, this::evict));
+    }
+
+    public Optional<GroupSnapshot> get(String groupId) {
+        return snapshots.get(groupId);
+    }
+
+    // cache khác phụ thuộc thành viên nhóm (vd room context) đăng ký để bị xóa cùng lúc, kể cả invalidate từ node khác
+    public void onInvalidate(Consumer<String> listener) {
+        invalidationListeners.add(listener);
+    }
+
+    public void invalidate(String groupId) {
+        evict(groupId);
+        clusterRelayBridge.ifAvailable(bridge -> bridge.invalidate(CACHE_NAME, groupId));
+    }
+
+    private void evict(String groupId) {
+        snapshots.invalidate(groupId);
+        invalidationListeners.forEach(listener -> listener.accept(groupId));
+    }
+}
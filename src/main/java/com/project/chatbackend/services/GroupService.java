@@ -6,13 +6,13 @@ import com.project.chatbackend.exceptions.PermissionAccessDenied;
 import com.project.chatbackend.models.*;
 import com.project.chatbackend.repositories.GroupRepository;
 import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.RoomLatestRepository;
 import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.UserRepository;
 import com.project.chatbackend.requests.UpdateGroupRequest;
 import com.project.chatbackend.responses.UserNotify;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -21,7 +21,9 @@ import java.io.IOException;
 import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.stream.Stream;
@@ -35,8 +37,11 @@ public class GroupService implements IGroupService {
     private final IRoomService roomService;
     private final S3UploadService s3UploadService;
     private final MessageRepository messageRepository;
-    private final SimpMessagingTemplate simpMessagingTemplate;
     private final RoomRepository roomRepository;
+    private final RoomLatestRepository roomLatestRepository;
+    private final GroupMembershipCache groupMembershipCache;
+    private final GroupBroadcaster groupBroadcaster;
+    private final NotificationDispatcher notificationDispatcher;
 
     @Override
     @Transactional
@@ -62,9 +67,10 @@ public class GroupService implements IGroupService {
                 .numberOfMembers(membersId.size())
                 .build();
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
         // add message type system
         Message message = Message.builder()
-                .content(ownerName + " đã tạo nhóm")
+                .content(TextContent.of(ownerName + " đã tạo nhóm"))
                 .messageType(MessageType.SYSTEM)
                 .senderId("system@gmail.com")
                 .messageStatus(MessageStatus.SENT)
@@ -72,7 +78,9 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
         Room roomOwner = null;
+        Map<String, Room> roomsByMember = new LinkedHashMap<>();
         // create room for members
         LocalDateTime time = LocalDateTime.now();
         for (String memberId: membersId) {
@@ -83,17 +91,14 @@ public class GroupService implements IGroupService {
             room.setLatestMessage(message.getContent().toString());
             roomRepository.save(room);
             if(room.getSenderId().equals(ownerId)) roomOwner = room;
-            UserNotify userNotify = UserNotify.builder()
-                    .message(message)
-                    .status("CREATE_GROUP")
-                    .room(room)
-                    .build();
-            // notify
-            simpMessagingTemplate.convertAndSendToUser(
-                    memberId, "queue/messages",
-                    userNotify
-            );
+            roomsByMember.put(memberId, room);
         }
+        // notify: message chung chỉ encode 1 lần, mỗi thành viên nhận room của mình
+        UserNotify userNotify = UserNotify.builder()
+                .message(message)
+                .status("CREATE_GROUP")
+                .build();
+        notificationDispatcher.sendWithRooms(userNotify, roomsByMember);
         return roomOwner;
     }
 
@@ -120,6 +125,7 @@ public class GroupService implements IGroupService {
         group.setNumberOfMembers(newMembers.size());
         group.setUpdatedAt(LocalDateTime.now());
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         User adder = userRepository.findByEmail(adderId).orElseThrow();
 
@@ -129,7 +135,7 @@ public class GroupService implements IGroupService {
         for(String memberId: membersId) {
             User newMember = userRepository.findByEmail(memberId).orElseThrow();
             Message message = Message.builder()
-                    .content(newMember.getName() + " đã được " + adder.getName() + " thêm vào nhóm")
+                    .content(TextContent.of(newMember.getName() + " đã được " + adder.getName() + " thêm vào nhóm"))
                     .messageType(MessageType.SYSTEM)
                     .sendDate(LocalDateTime.now())
                     .senderId("system@gmail.com")
@@ -137,6 +143,7 @@ public class GroupService implements IGroupService {
                     .roomId(group.getId())
                     .build();
             messageRepository.save(message);
+            roomLatestRepository.advance(message);
             if(index == membersId.size() - 1)
                 messageLatest = message;
             // kiểm tra room có trong hệ thống chưa
@@ -156,10 +163,7 @@ public class GroupService implements IGroupService {
                     .status("ADD_MEMBER")
                     .room(room)
                     .build();
-            simpMessagingTemplate.convertAndSendToUser(
-                    memberId, "queue/messages",
-                    userNotify
-            );
+            notificationDispatcher.notifyUser(memberId, userNotify);
             ++index;
 
         }
@@ -180,10 +184,7 @@ public class GroupService implements IGroupService {
         UserNotify userNotify = UserNotify.builder()
                 .status("ADD_MEMBER_GROUP")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "queue/messages",
-                userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
 
 
     }
@@ -209,7 +210,7 @@ public class GroupService implements IGroupService {
         User admin = userRepository.findByEmail(adminId).orElseThrow(() -> new DateTimeException("member not found"));
         // save message system
         Message message = Message.builder()
-                .content(memberDelete.getName() + " đã bị " + admin.getName() + " xóa khỏi nhóm")
+                .content(TextContent.of(memberDelete.getName() + " đã bị " + admin.getName() + " xóa khỏi nhóm"))
                 .messageType(MessageType.SYSTEM)
                 .sendDate(LocalDateTime.now())
                 .senderId("system@gmail.com")
@@ -217,6 +218,7 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
 
         // update room for members
         LocalDateTime time = LocalDateTime.now();
@@ -246,23 +248,20 @@ public class GroupService implements IGroupService {
         group.setAdmins(admins);
         group.setUpdatedAt(LocalDateTime.now());
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to user remove
         UserNotify userNotifyUser = UserNotify.builder()
                 .status("REMOVE_MEMBER")
                 .room(roomRemove)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                memberId, "/queue/messages", userNotifyUser
-        );
+        notificationDispatcher.notifyUser(memberId, userNotifyUser);
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("REMOVE_MEMBER_GROUP")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
     }
 
     @Override
@@ -279,7 +278,7 @@ public class GroupService implements IGroupService {
         if(!ownerId.equals(group.getOwner())) throw new PermissionAccessDenied("permission access denied");
         group.setGroupStatus(GroupStatus.INACTIVE);
         Message message = Message.builder()
-                .content("trưởng nhóm đã giải tán nhóm")
+                .content(TextContent.of("trưởng nhóm đã giải tán nhóm"))
                 .messageType(MessageType.SYSTEM)
                 .sendDate(LocalDateTime.now())
                 .senderId("system@gmail.com")
@@ -287,6 +286,7 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
         List<String> members = group.getMembers();
 
         LocalDateTime time = LocalDateTime.now();
@@ -306,15 +306,14 @@ public class GroupService implements IGroupService {
         // update group
         group.setUpdatedAt(time);
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("REMOVE_GROUP")
                 .room(roomLatest)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
 
     }
 
@@ -338,7 +337,7 @@ public class GroupService implements IGroupService {
         User admin = userRepository.findByEmail(adminId).orElseThrow(() -> new DataNotFoundException("admin not found"));
 
         Message message = Message.builder()
-                .content(admin.getName() + " đã trở thành phó nhóm")
+                .content(TextContent.of(admin.getName() + " đã trở thành phó nhóm"))
                 .messageType(MessageType.SYSTEM)
                 .sendDate(LocalDateTime.now())
                 .senderId("system@gmail.com")
@@ -346,6 +345,7 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
 
         // update room for members
         for (String memberId: members) {
@@ -359,14 +359,13 @@ public class GroupService implements IGroupService {
         }
 
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("ADD_ADMIN")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
 
 
     }
@@ -389,7 +388,7 @@ public class GroupService implements IGroupService {
         User admin = userRepository.findByEmail(adminId).orElseThrow(() -> new DataNotFoundException("admin not found"));
 
         Message message = Message.builder()
-                .content(admin.getName() + " không còn là phó nhóm")
+                .content(TextContent.of(admin.getName() + " không còn là phó nhóm"))
                 .messageType(MessageType.SYSTEM)
                 .sendDate(LocalDateTime.now())
                 .senderId("system@gmail.com")
@@ -397,6 +396,7 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
 
         // update room for members
         for (String memberId: members) {
@@ -410,14 +410,13 @@ public class GroupService implements IGroupService {
         }
 
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("REMOVE_ADMIN")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
     }
 
     @Override
@@ -430,14 +429,13 @@ public class GroupService implements IGroupService {
         group.setAddMembersPermission(addMembersPermission);
         group.setUpdatedAt(LocalDateTime.now());
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("UPDATE_ADD_MEMBER_PERMISSION")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
     }
 
     @Override
@@ -449,14 +447,13 @@ public class GroupService implements IGroupService {
         group.setSendMessagePermission(sendMessagePermission);
         group.setUpdatedAt(LocalDateTime.now());
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("UPDATE_ADD_SEND_MESSAGE_PERMISSION")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
     }
 
     @Override
@@ -486,10 +483,11 @@ public class GroupService implements IGroupService {
         LocalDateTime time = LocalDateTime.now();
         group.setUpdatedAt(time);
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
         User member = userRepository.findByEmail(memberId).orElseThrow(() -> new DataNotFoundException("user not found"));
         Message message = Message.builder()
-                .content(messageString.isEmpty() ? member.getName() + " đã rời nhóm" :
-                        member.getName() + " đã rời nhóm" + ", " + messageString)
+                .content(TextContent.of(messageString.isEmpty() ? member.getName() + " đã rời nhóm" :
+                        member.getName() + " đã rời nhóm" + ", " + messageString))
                 .messageType(MessageType.SYSTEM)
                 .sendDate(LocalDateTime.now())
                 .senderId("system@gmail.com")
@@ -497,6 +495,7 @@ public class GroupService implements IGroupService {
                 .roomId(group.getId())
                 .build();
         messageRepository.save(message);
+        roomLatestRepository.advance(message);
         Room roomLeave = new Room();
         // update room for members
         for (String memberGroupId: membersBefore) {
@@ -520,6 +519,7 @@ public class GroupService implements IGroupService {
         }
 
         groupRepository.save(group);
+        groupMembershipCache.invalidate(group.getId());
 
 
 
@@ -529,17 +529,13 @@ public class GroupService implements IGroupService {
                 .status("LEAVE")
                 .room(roomLeave)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                memberId, "/queue/messages", userNotifyMain
-        );
+        notificationDispatcher.notifyUser(memberId, userNotifyMain);
 
         // notify to group
         UserNotify userNotify = UserNotify.builder()
                 .status("MEMBER_LEAVE")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                groupId, "/queue/messages", userNotify
-        );
+        groupBroadcaster.publish(groupId, userNotify);
 
 
 
@@ -579,7 +575,10 @@ public class GroupService implements IGroupService {
         Group group = groupRepository.findById(id).orElseThrow();
         group.setGroupName(updateGroupRequest.getGroupName());
         group.setAvatar(updateGroupRequest.getAvatar());
-        return groupRepository.save(group);
+        Group groupRs = groupRepository.save(group);
+        groupMembershipCache.invalidate(groupRs.getId());
+        roomRepository.updateReceiverProfile(groupRs.getId(), groupRs.getGroupName(), groupRs.getAvatar());
+        return groupRs;
     }
 
     private Group getGroup(String adderId, Optional<Group> optionalGroup) throws PermissionAccessDenied {
@@ -0,0 +1,8 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.responses.PageRoomResponse;
+import org.springframework.data.domain.PageRequest;
+
+public interface IInboxService {
+    PageRoomResponse getInbox(String senderId, PageRequest pageRequest, boolean denormalized);
+}
@@ -0,0 +1,96 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.repositories.GroupRepository;
+import com.project.chatbackend.repositories.RoomRepository;
+import com.project.chatbackend.repositories.UserRepository;
+import com.project.chatbackend.responses.PageRoomResponse;
+import com.project.chatbackend.responses.RoomResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * dựng trang inbox: tên, avatar của user/nhóm nhận được lấy cho cả trang
+ * bằng 2 lệnh findAllById thay vì 1 lệnh cho mỗi room
+ */
+@Service
+@RequiredArgsConstructor
+public class InboxService implements IInboxService {
+    private final RoomRepository roomRepository;
+    private final UserRepository userRepository;
+    private final GroupRepository groupRepository;
+
+    @Override
+    public PageRoomResponse getInbox(String senderId, PageRequest pageRequest, boolean denormalized) {
+        Page<Room> rooms = roomRepository.findAllBySenderId(senderId, pageRequest);
+        // denormalized => chỉ join các room chưa có receiver_name (dữ liệu cũ) rồi lưu lại
+        List<Room> unresolvedRooms = denormalized
+                ? rooms.getContent().stream().filter(room -> room.getReceiverName() == null).toList()
+                : rooms.getContent();
+        if (!unresolvedRooms.isEmpty()) {
+            List<Room> resolvedRooms = resolveReceivers(unresolvedRooms);
+            if (denormalized) roomRepository.saveReceiverProfiles(resolvedRooms);
+        }
+        List<RoomResponse> roomResponses = rooms.getContent().stream()
+                .map(this::toRoomResponse)
+                .toList();
+        return PageRoomResponse.builder()
+                .roomResponses(roomResponses)
+                .totalPage(rooms.getTotalPages())
+                .build();
+    }
+
+    private List<Room> resolveReceivers(List<Room> rooms) {
+        Set<String> userIds = new HashSet<>();
+        Set<String> groupIds = new HashSet<>();
+        for (Room room : rooms) {
+            if (room.getRoomType() == RoomType.SINGLE_CHAT) userIds.add(room.getReceiverId());
+            else groupIds.add(room.getReceiverId());
+        }
+        Map<String, User> users = userIds.isEmpty() ? Map.of() : userRepository.findAllById(userIds)
+                .stream().collect(Collectors.toMap(User::getEmail, Function.identity()));
+        Map<String, Group> groups = groupIds.isEmpty() ? Map.of() : groupRepository.findAllById(groupIds)
+                .stream().collect(Collectors.toMap(Group::getId, Function.identity()));
+        List<Room> resolvedRooms = new ArrayList<>();
+        for (Room room : rooms) {
+            if (room.getRoomType() == RoomType.SINGLE_CHAT) {
+                User user = users.get(room.getReceiverId());
+                if (user == null) continue;
+                room.setReceiverName(user.getName());
+                room.setReceiverAvatar(user.getAvatar());
+            } else {
+                Group group = groups.get(room.getReceiverId());
+                if (group == null) continue;
+                room.setReceiverName(group.getGroupName());
+                room.setReceiverAvatar(group.getAvatar());
+            }
+            resolvedRooms.add(room);
+        }
+        return resolvedRooms;
+    }
+
+    private RoomResponse toRoomResponse(Room room) {
+        return RoomResponse.builder()
+                .objectId(room.getId())
+                .roomId(room.getRoomId())
+                .receiverId(room.getReceiverId())
+                .senderId(room.getSenderId())
+                .time(room.getTime())
+                .latestMessage(room.getLatestMessage())
+                .numberOfUnreadMessage(room.getNumberOfUnreadMessage())
+                .avatar(room.getReceiverAvatar())
+                .sender(room.isSender())
+                .roomStatus(room.getRoomStatus())
+                .lastSeenAt(room.getLastSeenAt())
+                .lastSeenMessageId(room.getLastSeenMessageId())
+                .roomType(room.getRoomType())
+                .name(room.getReceiverName())
+                .build();
+    }
+}
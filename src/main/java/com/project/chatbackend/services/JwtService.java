@@ -1,8 +1,7 @@
 package com.project.chatbackend.services;
 
-import com.project.chatbackend.models.Token;
-import com.project.chatbackend.repositories.TokenRepository;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -15,22 +14,31 @@ import org.springframework.stereotype.Service;
 import java.security.Key;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Optional;
+import java.util.UUID;
 import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class JwtService {
-    private final TokenRepository tokenRepository;
+    private final TokenValidationCache tokenValidationCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
     @Value("${jwt.expiration}")
     private long expiration;
     @Value("${jwt.expiration-refresh-token}")
     private long expirationRefreshToken;
     @Value("${jwt.secretKey}")
     private String secretKey;
+    // key và parser không đổi trong suốt vòng đời ứng dụng => tạo 1 lần
+    private volatile Key signKey;
+    private volatile JwtParser jwtParser;
 
     public String generateToken(UserDetails userDetails) {
+        return generateToken(userDetails, UUID.randomUUID().toString());
+    }
+
+    public String generateToken(UserDetails userDetails, String jti) {
         return Jwts.builder()
+                .setId(jti)
                 .setSubject(userDetails.getUsername())
                 .setIssuedAt(new Date(System.currentTimeMillis()))
                 .setExpiration(new Date(System.currentTimeMillis() + expiration * 1000))
@@ -39,8 +47,18 @@ public class JwtService {
     }
 
     private Key getSignKey() {
-        byte[] keys = Decoders.BASE64URL.decode(secretKey);
-        return Keys.hmacShaKeyFor(keys);
+        if (signKey == null) {
+            byte[] keys = Decoders.BASE64URL.decode(secretKey);
+            signKey = Keys.hmacShaKeyFor(keys);
+        }
+        return signKey;
+    }
+
+    private JwtParser getParser() {
+        if (jwtParser == null) {
+            jwtParser = Jwts.parserBuilder().setSigningKey(getSignKey()).build();
+        }
+        return jwtParser;
     }
 
     public String extractUsername(String token) {
@@ -52,23 +70,24 @@ public class JwtService {
         return claimsResolvers.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder().setSigningKey(getSignKey()).build().parseClaimsJws(token).getBody();
+    public Claims extractAllClaims(String token) {
+        return getParser().parseClaimsJws(token).getBody();
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        Optional<Token> optionalToken = tokenRepository.findByAccessToken(token);
-        if(optionalToken.isEmpty()) {
+    // claims đã được parse 1 lần ở JwtAuthFilter, không truy vấn db với token có jti
+    public boolean isTokenValid(String token, Claims claims, UserDetails userDetails) {
+        if (claims.getId() != null) {
+            if (tokenRevocationRegistry.isRevoked(claims.getId())) return false;
+        } else if (!tokenValidationCache.isActive(token)) {
+            // token cấp trước khi có jti
             return false;
-        } else {
-            if(optionalToken.get().isRevoked()) return false;
         }
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final String username = claims.getSubject();
+        return (username.equals(userDetails.getUsername()) && !isTokenExpired(claims));
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractClaim(token, Claims::getExpiration).before(new Date());
+    private boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     public String generateRefreshToken(HashMap<String, Object> extractClaims, UserDetails userDetails) {
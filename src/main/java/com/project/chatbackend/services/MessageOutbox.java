@@ -0,0 +1,52 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.OutboxEvent;
+import com.project.chatbackend.repositories.OutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * ghi/xóa outbox event của tin nhắn, không dùng transaction nên thứ tự ghi là:
+ * event -> message (SENT) -> cập nhật room + thông báo -> xóa event.
+ * dừng sau khi ghi event mà chưa lưu message => dispatcher thấy message không tồn tại và bỏ event,
+ * dừng sau khi lưu message => event còn lại và được OutboxDispatcher gửi lại sau grace-ms.
+ * tin nhắn file: nội dung (fileKey/filePath) được lưu trước khi ghi event
+ */
+@Component
+@RequiredArgsConstructor
+public class MessageOutbox {
+    private final OutboxRepository outboxRepository;
+    // thời gian đường gửi trực tiếp được phép hoàn thành trước khi dispatcher coi là bị bỏ dở
+    @Value("${chat.outbox.grace-ms:10000}")
+    private long graceMs;
+
+    // message chưa có id thì gán trước để event trỏ được tới message sắp lưu
+    public String open(Message message, String senderName) {
+        if (message.getId() == null) message.setId(new ObjectId().toHexString());
+        LocalDateTime now = LocalDateTime.now();
+        OutboxEvent event = OutboxEvent.builder()
+                .eventId(new ObjectId().toHexString())
+                .messageId(message.getId())
+                .senderId(message.getSenderId())
+                .senderName(senderName)
+                .nextAttemptAt(now.plusNanos(graceMs * 1_000_000))
+                .createdAt(now)
+                .build();
+        outboxRepository.insert(event);
+        return event.getEventId();
+    }
+
+    public void close(String eventId) {
+        if (eventId != null) outboxRepository.deleteById(eventId);
+    }
+
+    // không chờ hết grace-ms, dispatcher lấy ở lượt kế tiếp
+    public void dueNow(String eventId) {
+        if (eventId != null) outboxRepository.dueNow(eventId);
+    }
+}
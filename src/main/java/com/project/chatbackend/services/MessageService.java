@@ -2,28 +2,30 @@ package com.project.chatbackend.services;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.project.chatbackend.exceptions.*;
 import com.project.chatbackend.models.*;
-import com.project.chatbackend.repositories.GroupRepository;
+import com.project.chatbackend.repositories.IMessageRepositoryQuery;
 import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.RoomLatestRepository;
 import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.UserRepository;
 import com.project.chatbackend.requests.CallRequest;
 import com.project.chatbackend.requests.ChatImageGroupRequest;
 import com.project.chatbackend.requests.ChatRequest;
+import com.project.chatbackend.responses.MessageHistoryResponse;
 import com.project.chatbackend.responses.UserNotify;
 import com.project.chatbackend.responses.MessageResponse;
 import com.project.chatbackend.utils.CallHandler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -35,60 +37,22 @@ import java.util.stream.Stream;
 @RequiredArgsConstructor
 @Slf4j
 public class MessageService implements IMessageService {
+    private static final int MAX_HISTORY_LIMIT = 100;
     private final UserRepository userRepository;
-    private final GroupRepository groupRepository;
+    private final GroupMembershipCache groupMembershipCache;
+    private final ReplyParentResolver replyParentResolver;
+    private final ObjectMapper objectMapper;
     private final RoomRepository roomRepository;
     private final MessageRepository messageRepository;
+    private final RoomLatestRepository roomLatestRepository;
+    private final IMessageRepositoryQuery messageRepositoryQuery;
     private final RoomService roomService;
     private final S3UploadService s3UploadService;
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final NotificationDispatcher notificationDispatcher;
     private final CallHandler callHandler;
-    private final S3UploadAsync s3UploadAsync;
-
-    @Override
-    @Transactional
-    public void saveMessage(ChatRequest chatRequest, Message messageTmp, Group group) throws MaxFileSizeException {
-//        Group group = checkPermissionInChatGroup(chatRequest);
-//        User user = userRepository.findByEmail(chatRequest.getSenderId()).orElseThrow();
-        Message message = convertToMessage(chatRequest);
-        message.setId(messageTmp.getId());
-        message.setRoomId(messageTmp.getRoomId());
-        message.setSenderAvatar(chatRequest.getSenderAvatar());
-        if(Objects.equals(chatRequest.getSenderAvatar(), "null") || chatRequest.getSenderAvatar() == null) {
-            message.setSenderAvatar("");
-        }
-        message.setSenderName(chatRequest.getSenderName());
-        String roomIdConvert = message.getRoomId();
-        message.setRoomId(roomIdConvert);
-
-        try {
-            if (chatRequest.getFileContent() != null) {
-                s3UploadService.uploadFile(chatRequest.getFileContent(), message);
-            } else {
-                s3UploadAsync.saveMessageAsync(message, chatRequest, group);
-            }
-
-
-        } catch (MaxFileSizeException e) {
-            throw e;
-        } catch (Exception e) {
-//            List<Room> rooms = roomService.findByRoomId(roomIdConvert);
-//            for (Room room : rooms) {
-//                if (Objects.equals(room.getSenderId(), message.getSenderId())) {
-//                    if (message.getContent() instanceof FileObject fileObject) {
-//                        room.setLatestMessage(fileObject.getFilename());
-//                    } else room.setLatestMessage(message.getContent().toString());
-//                    room.setTime(LocalDateTime.now());
-//                    room.setSender(true);
-//                    room.setNumberOfUnreadMessage(0);
-//                    roomService.saveRoom(room);
-//                    break;
-//                }
-//            }
-
-        }
-
-    }
+    private final FanOutAdmission fanOutAdmission;
+    private final MessageOutbox messageOutbox;
+    private final GroupBroadcaster groupBroadcaster;
 
     private String getRoomIdConvert(String senderId, String receiverId) throws DataNotFoundException {
         var roomId = roomService.getRoomId(senderId, receiverId);
@@ -98,13 +62,12 @@ public class MessageService implements IMessageService {
 
     @Override
     public MessageResponse getAllByRoomId(String senderId, String roomId, PageRequest pageRequest) {
-        Optional<Group> group = groupRepository.findById(roomId);
+        Optional<GroupSnapshot> group = groupMembershipCache.get(roomId);
         Page<Message> messagePage = messageRepository.getAllByRoomId(roomId, pageRequest);
         // kiểm tra trong trường hợp room này là group_chat
         if (group.isPresent()) {
-            List<String> members = group.get().getMembers();
             // nếu group inactive thì chỉ trả về các tin nhắn hệ thống
-            if (group.get().getGroupStatus().equals(GroupStatus.INACTIVE)) {
+            if (group.get().isInactive()) {
                 List<Message> messagesSystem = messagePage.getContent()
                         .stream()
                         .filter(msg -> msg.getMessageType().equals(MessageType.SYSTEM))
@@ -116,7 +79,7 @@ public class MessageService implements IMessageService {
                         .build();
             }
             // nếu user không có trong group => không trả về message
-            if (!members.contains(senderId)) {
+            if (!group.get().isMember(senderId)) {
                 return MessageResponse.builder()
                         .messages(new ArrayList<>())
                         .totalPage(0)
@@ -125,10 +88,67 @@ public class MessageService implements IMessageService {
         }
 
 
-        List<Message> messagesSend = messagePage.getContent().stream().filter(msg ->
+        return MessageResponse.builder()
+                .messages(filterForViewer(senderId, messagePage.getContent()))
+                .totalPage(messagePage.getTotalPages())
+                .build();
+
+    }
+
+    @Override
+    public MessageHistoryResponse getHistory(String senderId, String roomId, String before, int limit) {
+        if (limit < 1 || limit > MAX_HISTORY_LIMIT)
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_HISTORY_LIMIT);
+        LocalDateTime beforeDate = null;
+        String beforeId = null;
+        if (before != null && !before.isEmpty()) {
+            String[] cursor = before.split(",");
+            if (cursor.length != 2 || !ObjectId.isValid(cursor[1]))
+                throw new IllegalArgumentException("cursor invalid");
+            beforeDate = LocalDateTime.parse(cursor[0]);
+            beforeId = cursor[1];
+        }
+        Optional<GroupSnapshot> group = groupMembershipCache.get(roomId);
+        // lấy dư 1 tin nhắn để biết còn trang tiếp theo hay không
+        List<Message> messages = messageRepositoryQuery.findHistoryBefore(roomId, beforeDate, beforeId, limit + 1);
+        boolean hasMore = messages.size() > limit;
+        if (hasMore) messages = messages.subList(0, limit);
+        // cursor lấy theo trang gốc, trước khi lọc, để room chỉ còn tin nhắn hệ thống vẫn phân trang được
+        String nextCursor = null;
+        if (hasMore) {
+            Message oldest = messages.get(messages.size() - 1);
+            nextCursor = oldest.getSendDate() + "," + oldest.getId();
+        }
+        if (group.isPresent()) {
+            if (group.get().isInactive()) {
+                List<Message> messagesSystem = messages
+                        .stream()
+                        .filter(msg -> msg.getMessageType().equals(MessageType.SYSTEM))
+                        .sorted(Comparator.comparing(Message::getSendDate))
+                        .toList();
+                return MessageHistoryResponse.builder()
+                        .messages(messagesSystem)
+                        .nextCursor(nextCursor)
+                        .build();
+            }
+            if (!group.get().isMember(senderId)) {
+                return MessageHistoryResponse.builder()
+                        .messages(new ArrayList<>())
+                        .build();
+            }
+        }
+        return MessageHistoryResponse.builder()
+                .messages(filterForViewer(senderId, messages))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    // ẩn tin nhắn đang gửi/lỗi của người khác và cập nhật avatar, tên người gửi
+    private List<Message> filterForViewer(String senderId, List<Message> messages) {
+        List<Message> messagesSend = messages.stream().filter(msg ->
                 msg.getSenderId().equals(senderId)
         ).toList();
-        List<Message> messagesReceive = messagePage.getContent().stream().filter(msg ->
+        List<Message> messagesReceive = messages.stream().filter(msg ->
                 !msg.getSenderId().equals(senderId)
         ).toList();
 
@@ -143,7 +163,7 @@ public class MessageService implements IMessageService {
                 !msg.getMessageStatus().equals(MessageStatus.SENDING) &&
                         !msg.getMessageStatus().equals(MessageStatus.ERROR)
         ).toList();
-        List<Message> results = Stream
+        return Stream
                 .concat(messagesSend.stream(), messagesFilter.stream())
                 .sorted(Comparator.comparing(Message::getSendDate))
                 .peek(msg -> {
@@ -156,11 +176,6 @@ public class MessageService implements IMessageService {
                     }
                 })
                 .toList();
-        return MessageResponse.builder()
-                .messages(results)
-                .totalPage(messagePage.getTotalPages())
-                .build();
-
     }
 
 
@@ -177,23 +192,47 @@ public class MessageService implements IMessageService {
     }
 
     @Override
-    public Map<String, Object> saveMessage(ChatRequest chatRequest) throws DataNotFoundException, PermissionAccessDenied, BlockUserException, BlockMessageToStranger {
-        Map<String, Object> result = new HashMap<>();
-        Group group = null;
-        checkPermissionChatUser(chatRequest);
-        String roomId = getRoomIdConvert(chatRequest.getSenderId(), chatRequest.getReceiverId());
-        Room room = roomRepository.findBySenderIdAndReceiverId(chatRequest.getSenderId(),
-                chatRequest.getReceiverId()).orElseThrow(() -> new DataNotFoundException("room not found"));
-        if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
+    public Message sendMessage(ChatRequest chatRequest) throws DataNotFoundException, PermissionAccessDenied, BlockUserException, BlockMessageToStranger, MaxFileSizeException {
+        // roomId, roomType lấy từ cache => chỉ kiểm tra quyền theo đúng loại room
+        Optional<RoomContext> existing = roomService.findRoomContext(chatRequest.getSenderId(), chatRequest.getReceiverId());
+        GroupSnapshot group = null;
+        RoomContext roomContext;
+        if (existing.isPresent() && existing.get().isGroupChat()) {
             group = checkPermissionInChatGroup(chatRequest);
+            roomContext = existing.get();
+        } else {
+            checkPermissionChatUser(chatRequest);
+            roomContext = existing.isPresent() ? existing.get() : openSingleRoom(chatRequest);
         }
         Message message = convertToMessage(chatRequest);
+        message.setRoomId(roomContext.getRoomId());
+        if (chatRequest.getMessageParentId() != null) {
+            message.setMessagesParent(replyParentResolver
+                    .resolve(chatRequest.getMessageParentId(), roomContext.getRoomId())
+                    .orElse(null));
+        }
         message.setSendDate(LocalDateTime.now());
-        message.setRoomId(roomId);
+        message.setSenderName(chatRequest.getSenderName());
+        message.setSenderAvatar(chatRequest.getSenderAvatar());
+        if (Objects.equals(chatRequest.getSenderAvatar(), "null") || chatRequest.getSenderAvatar() == null) {
+            message.setSenderAvatar("");
+        }
+        if (chatRequest.getFileContent() != null) {
+            // file phải upload xong mới chuyển sang SENT
+            Message messageRs = messageRepository.save(message);
+            try {
+                s3UploadService.uploadFile(chatRequest.getFileContent(), messageRs, group);
+            } catch (IOException e) {
+                log.error(e.getMessage());
+            }
+            return messageRs;
+        }
+        // tin nhắn text được lưu 1 lần duy nhất ở trạng thái cuối cùng, outbox event ghi trước message
+        String eventId = messageOutbox.open(message, chatRequest.getSenderName());
+        message.setMessageStatus(MessageStatus.SENT);
         Message messageRs = messageRepository.save(message);
-        result.put("message", messageRs);
-        result.put("group", group);
-        return result;
+        fanOutAdmission.deliver(messageRs, chatRequest.getSenderName(), group, eventId);
+        return messageRs;
     }
 
     private void checkPermissionChatUser(ChatRequest chatRequest) throws BlockMessageToStranger, BlockUserException {
@@ -215,33 +254,32 @@ public class MessageService implements IMessageService {
         }
     }
 
-    private Group checkPermissionInChatGroup(ChatRequest chatRequest) throws PermissionAccessDenied {
+    // chưa có room => chỉ tạo room chat đơn khi receiver là user thật, đã qua kiểm tra quyền
+    private RoomContext openSingleRoom(ChatRequest chatRequest) throws DataNotFoundException {
+        if (userRepository.findByEmail(chatRequest.getReceiverId()).isEmpty())
+            throw new DataNotFoundException("user not found");
+        return roomService.openSingleRoom(chatRequest.getSenderId(), chatRequest.getReceiverId());
+    }
+
+    private GroupSnapshot checkPermissionInChatGroup(ChatRequest chatRequest) throws PermissionAccessDenied {
         // kiểm tra xem có phải cuộc trò chuyện nhóm hay không
-        Optional<Group> optionalGroup = groupRepository.findById(chatRequest.getReceiverId());
+        Optional<GroupSnapshot> optionalGroup = groupMembershipCache.get(chatRequest.getReceiverId());
         if (optionalGroup.isPresent()) {
-
-
-            Group group = optionalGroup.get();
+            GroupSnapshot group = optionalGroup.get();
+            String senderId = chatRequest.getSenderId();
             // kiểm tra group có active hay không
-            if (group.getGroupStatus().equals(GroupStatus.INACTIVE))
+            if (group.isInactive())
                 throw new PermissionAccessDenied("group inactive");
             // kiểm tra user có trong group hay không
-            List<String> members = group.getMembers();
-            if (!members.contains(chatRequest.getSenderId()))
+            if (!group.isMember(senderId))
                 throw new PermissionAccessDenied("user is not in group");
 
             // kiểm tra quyền của senderId trong nhóm nếu permission là only_admin hoặc only_owner
             SendMessagePermission sendMessagePermission = group.getSendMessagePermission();
-            if (sendMessagePermission.equals(SendMessagePermission.ONLY_ADMIN)) {
-                List<String> admins = group.getAdmins();
-                if (!admins.contains(chatRequest.getSenderId()) &&
-                        !group.getOwner().equals(chatRequest.getSenderId()))
-                    throw new PermissionAccessDenied("only admins or owner can send message");
-            }
-            if (sendMessagePermission.equals(SendMessagePermission.ONLY_OWNER)) {
-                if (!group.getOwner().equals(chatRequest.getSenderId()))
-                    throw new PermissionAccessDenied("only owner can send message");
-            }
+            if (sendMessagePermission == SendMessagePermission.ONLY_ADMIN && !group.isAdminOrOwner(senderId))
+                throw new PermissionAccessDenied("only admins or owner can send message");
+            if (sendMessagePermission == SendMessagePermission.ONLY_OWNER && !group.isOwner(senderId))
+                throw new PermissionAccessDenied("only owner can send message");
             return group;
         }
         return null;
@@ -262,42 +300,31 @@ public class MessageService implements IMessageService {
         Message message = optionalMessage.orElseThrow();
         if (!message.getSenderId().equals(senderId))
             throw new PermissionAccessDenied("permission access denied");
-        boolean isLatestMessage = messageRepository
-                .findTopByOrderBySendDateDesc()
-                .getId().equals(messageId);
-        List<Room> rooms = roomRepository.findByRoomId(message.getRoomId());
+        boolean isLatestMessage = roomLatestRepository.isLatestInRoom(message);
         message.setMessageStatus(MessageStatus.REVOKED);
         Message messageRs = messageRepository.save(message);
+        replyParentResolver.invalidate(messageId);
         if (isLatestMessage) {
-            for (Room room : rooms) {
-                if (!room.getSenderId().equals(senderId)) {
-                    if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                        User user = userRepository.findByEmail(senderId).orElseThrow();
-                        room.setLatestMessage(user.getName() + ": " + "Tin nhắn đã thu hồi");
-                    } else {
-                        room.setLatestMessage("Tin nhắn đã thu hồi");
-                    }
-                    room.setSender(false);
-                    roomService.saveRoom(room);
-                } else {
-                    room.setLatestMessage("Tin nhắn đã thu hồi");
-                    room.setTime(LocalDateTime.now());
-                    room.setSender(true);
-                    room.setNumberOfUnreadMessage(0);
-                    Room roomSender = roomService.saveRoom(room);
-                    UserNotify success = UserNotify.builder()
-                            .senderId(message.getSenderId())
-                            .receiverId(message.getReceiverId())
-                            .status("SUCCESS")
-                            .message(messageRs)
-                            .room(roomSender)
-                            .build();
-                    simpMessagingTemplate.convertAndSendToUser(
-                            senderId, "queue/messages",
-                            success
-                    );
-                }
+            String revokeMessage = "Tin nhắn đã thu hồi";
+            String latestMessage = revokeMessage;
+            boolean groupChat = roomService.findRoomContext(senderId, receiverId)
+                    .map(RoomContext::isGroupChat)
+                    .orElse(false);
+            if (groupChat) {
+                User user = userRepository.findByEmail(senderId).orElseThrow();
+                latestMessage = user.getName() + ": " + revokeMessage;
             }
+            roomRepository.revokeLatest(message.getRoomId(), senderId, latestMessage);
+            Room roomSender = roomRepository.touchLatest(message.getRoomId(), senderId,
+                    revokeMessage, LocalDateTime.now());
+            UserNotify success = UserNotify.builder()
+                    .senderId(message.getSenderId())
+                    .receiverId(message.getReceiverId())
+                    .status("SUCCESS")
+                    .message(messageRs)
+                    .room(roomSender)
+                    .build();
+            notificationDispatcher.notifyUser(senderId, success);
         }
         UserNotify success = UserNotify.builder()
                 .senderId(message.getSenderId())
@@ -305,20 +332,19 @@ public class MessageService implements IMessageService {
                 .status("SENT")
                 .message(messageRs)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                receiverId, "queue/messages",
-                success
-        );
-
         UserNotify revoke = UserNotify.builder()
                 .senderId(message.getSenderId())
                 .receiverId(message.getReceiverId())
                 .status("REVOKED_MESSAGE")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                receiverId, "queue/messages",
-                revoke
-        );
+        // nhóm chat => encode 1 lần cho cả nhóm
+        if (groupMembershipCache.get(receiverId).isPresent()) {
+            groupBroadcaster.publish(receiverId, success);
+            groupBroadcaster.publish(receiverId, revoke);
+            return;
+        }
+        notificationDispatcher.notifyUser(receiverId, success);
+        notificationDispatcher.notifyUser(receiverId, revoke);
     }
 
     @Override
@@ -335,65 +361,45 @@ public class MessageService implements IMessageService {
             newMsg.setSenderId(senderId);
             newMsg.setSenderAvatar(sendUser.getAvatar());
             newMsg.setSenderName(sendUser.getName());
-            String roomId = getRoomIdConvert(senderId, receiverId);
+            RoomContext roomContext = roomService.findRoomContext(senderId, receiverId)
+                    .orElseGet(() -> roomService.openSingleRoom(senderId, receiverId));
+            String roomId = roomContext.getRoomId();
             newMsg.setMessageStatus(MessageStatus.SENT);
             newMsg.setReceiverId(receiverId);
             newMsg.setSendDate(LocalDateTime.now());
             newMsg.setRoomId(roomId);
             newMsg.setMessagesParent(null);
             messageRs = messageRepository.save(newMsg);
+            roomLatestRepository.advance(messageRs);
 
             // update rooms
-            List<Room> rooms = roomRepository.findByRoomId(roomId);
-            for (Room room : rooms) {
-
-                if (!room.getSenderId().equals(senderId)) {
-                    if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                        User user = userRepository.findByEmail(senderId).orElseThrow();
-                        if (message.getContent() instanceof FileObject) {
-                            room.setLatestMessage(user.getName() + ": " + message.getMessageType().toString());
-                        } else room.setLatestMessage(user.getName() + ": " + message.getContent().toString());
-                    } else {
-                        if (message.getContent() instanceof FileObject) {
-                            room.setLatestMessage(message.getMessageType().toString());
-                        } else room.setLatestMessage(message.getContent().toString());
-                    }
-                    room.setTime(LocalDateTime.now());
-                    room.setSender(false);
-                    room.setNumberOfUnreadMessage(room.getNumberOfUnreadMessage() + 1);
-                    roomService.saveRoom(room);
-                } else {
-                    if (message.getContent() instanceof FileObject) {
-                        room.setLatestMessage(message.getMessageType().toString());
-                    } else room.setLatestMessage(message.getContent().toString());
-                    room.setLatestMessage(message.getContent().toString());
-                    room.setTime(LocalDateTime.now());
-                    room.setSender(true);
-                    room.setNumberOfUnreadMessage(0);
-                    Room roomSender = roomService.saveRoom(room);
-                    UserNotify success = UserNotify.builder()
-                            .senderId(message.getSenderId())
-                            .receiverId(message.getReceiverId())
-                            .status("SUCCESS")
-                            .message(messageRs)
-                            .room(roomSender)
-                            .build();
-                    simpMessagingTemplate.convertAndSendToUser(
-                            senderId, "queue/messages",
-                            success
-                    );
-                }
+            String latestMessage = message.getContent().toPreview(message.getMessageType());
+            String receiverLatestMessage = latestMessage;
+            if (roomContext.isGroupChat()) {
+                receiverLatestMessage = sendUser.getName() + ": " + latestMessage;
             }
+            LocalDateTime time = LocalDateTime.now();
+            roomRepository.incrementUnread(roomId, senderId, receiverLatestMessage, time);
+            Room roomSender = roomRepository.touchLatest(roomId, senderId, latestMessage, time);
+            UserNotify successSender = UserNotify.builder()
+                    .senderId(message.getSenderId())
+                    .receiverId(message.getReceiverId())
+                    .status("SUCCESS")
+                    .message(messageRs)
+                    .room(roomSender)
+                    .build();
+            notificationDispatcher.notifyUser(senderId, successSender);
             UserNotify success = UserNotify.builder()
                     .senderId(message.getSenderId())
                     .receiverId(message.getReceiverId())
                     .message(messageRs)
                     .status("SENT")
                     .build();
-            simpMessagingTemplate.convertAndSendToUser(
-                    message.getReceiverId(), "queue/messages",
-                    success
-            );
+            if (roomContext.isGroupChat()) {
+                groupBroadcaster.publish(receiverId, success);
+                continue;
+            }
+            notificationDispatcher.notifyUser(message.getReceiverId(), success);
 
         }
 
@@ -406,34 +412,14 @@ public class MessageService implements IMessageService {
 
     @Override
     public void seenMessage(String roomId, String senderId, String receiverId) {
-        List<Message> messagesSent = messageRepository.getAllByRoomIdAndMessageStatus(roomId, MessageStatus.SENT);
-        messagesSent = messagesSent.stream().filter(msg -> !msg.getSenderId().equals(senderId)).toList();
-        List<Message> messagesReceiver = messageRepository.getAllByRoomIdAndMessageStatus(roomId, MessageStatus.RECEIVED);
-        messagesReceiver = messagesReceiver.stream().filter(msg -> !msg.getSenderId().equals(senderId)).toList();
-        for (Message msgSent : messagesSent) {
-            msgSent.setSeenDate(LocalDateTime.now());
-            msgSent.setMessageStatus(MessageStatus.SEEN);
-            messageRepository.save(msgSent);
-        }
-        for (Message msgReceive : messagesReceiver) {
-            msgReceive.setSeenDate(LocalDateTime.now());
-            msgReceive.setMessageStatus(MessageStatus.SEEN);
-            messageRepository.save(msgReceive);
-        }
-        Optional<Room> optionalRoom = roomRepository.findBySenderIdAndReceiverId(senderId, receiverId);
-        Room room = optionalRoom.orElseThrow();
-        room.setNumberOfUnreadMessage(0);
-        roomRepository.save(room);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
+        RoomLatest latestMessage = roomService.markSeen(roomId, senderId).orElse(null);
+        if (latestMessage == null) return;
         UserNotify seen = UserNotify.builder()
                 .senderId(latestMessage.getSenderId())
                 .receiverId(latestMessage.getReceiverId())
                 .status("SEEN")
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                receiverId, "queue/messages",
-                seen
-        );
+        notificationDispatcher.notifyUser(receiverId, seen);
     }
 
     @Override
@@ -462,44 +448,21 @@ public class MessageService implements IMessageService {
                 .hiddenSenderSide(false)
                 .build();
         Message messageRs = messageRepository.save(message);
-        List<Room> rooms = roomRepository.findByRoomId(roomId);
+        roomLatestRepository.advance(messageRs);
         if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-            for (Room roomGroup : rooms) {
-                if (roomGroup.getSenderId().equals(callRequest.getSenderId())) {
-                    roomGroup.setLatestMessage("Đã bắt đầu cuộc gọi nhóm");
-                    roomGroup.setSender(true);
-                    roomGroup.setNumberOfUnreadMessage(0);
-                    roomGroup.setTime(time);
-                } else {
-                    User user = userRepository.findByEmail(callRequest.getSenderId()).orElseThrow();
-                    roomGroup.setLatestMessage(user.getName() + " đã bắt đầu cuộc gọi nhóm");
-                    roomGroup.setSender(false);
-                    roomGroup.setNumberOfUnreadMessage(roomGroup.getNumberOfUnreadMessage() + 1);
-                    roomGroup.setTime(time);
-                }
-                roomRepository.save(roomGroup);
-            }
+            User user = userRepository.findByEmail(callRequest.getSenderId()).orElseThrow();
+            roomRepository.incrementUnread(roomId, callRequest.getSenderId(),
+                    user.getName() + " đã bắt đầu cuộc gọi nhóm", time);
+            roomRepository.touchLatest(roomId, callRequest.getSenderId(), "Đã bắt đầu cuộc gọi nhóm", time);
         } else {
-            for (Room roomUser : rooms) {
-                String latestMessage;
-                if (callRequest.getMessageType().equals(MessageType.AUDIO_CALL)) {
-                    latestMessage = "Cuộc gọi thoại";
-                } else {
-                    latestMessage = "Cuộc gọi video";
-                }
-                if (roomUser.getSenderId().equals(callRequest.getSenderId())) {
-                    roomUser.setLatestMessage(latestMessage);
-                    roomUser.setSender(true);
-                    roomUser.setNumberOfUnreadMessage(0);
-                    roomUser.setTime(time);
-                } else {
-                    roomUser.setLatestMessage(latestMessage);
-                    roomUser.setSender(false);
-                    roomUser.setNumberOfUnreadMessage(roomUser.getNumberOfUnreadMessage() + 1);
-                    roomUser.setTime(time);
-                }
-                roomRepository.save(roomUser);
+            String latestMessage;
+            if (callRequest.getMessageType().equals(MessageType.AUDIO_CALL)) {
+                latestMessage = "Cuộc gọi thoại";
+            } else {
+                latestMessage = "Cuộc gọi video";
             }
+            roomRepository.incrementUnread(roomId, callRequest.getSenderId(), latestMessage, time);
+            roomRepository.touchLatest(roomId, callRequest.getSenderId(), latestMessage, time);
         }
         UserNotify callRequestNotify = UserNotify.builder()
                 .senderId(messageRs.getSenderId())
@@ -507,10 +470,7 @@ public class MessageService implements IMessageService {
                 .status("CALL_REQUEST")
                 .message(messageRs)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                callRequest.getReceiverId(), "queue/messages",
-                callRequestNotify
-        );
+        notificationDispatcher.notifyUser(callRequest.getReceiverId(), callRequestNotify);
         callHandler.startCall(messageRs);
         return messageRs;
     }
@@ -546,7 +506,7 @@ public class MessageService implements IMessageService {
                 .status("RECEIVED_MESSAGE")
                 .message(message)
                 .build();
-        simpMessagingTemplate.convertAndSendToUser(message.getSenderId(), "/queue/messages", messageReceive);
+        notificationDispatcher.notifyUser(message.getSenderId(), messageReceive);
     }
 
 
@@ -573,7 +533,7 @@ public class MessageService implements IMessageService {
                     .receiverId(chatImageGroupRequest.getReceiverId())
                     .messageType(chatImageGroupRequest.getMessageType())
                     .messageStatus(MessageStatus.SENDING)
-                    .content(fileObjects)
+                    .content(new FileGroupContent(fileObjects))
                     .build();
         }
         return null;
@@ -599,12 +559,12 @@ public class MessageService implements IMessageService {
                     .content(fileObject)
                     .build();
         }
-        Message messageParent = null;
-        if (chatRequest.getMessageParent() != null) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.registerModule(new JavaTimeModule());
+        // messageParentId được resolve sau khi biết roomId (sendMessage)
+        ReplySnapshot messageParent = null;
+        if (chatRequest.getMessageParentId() == null && chatRequest.getMessageParent() != null) {
             try {
-                messageParent = objectMapper.readValue(chatRequest.getMessageParent(), Message.class);
+                messageParent = objectMapper.readValue(chatRequest.getMessageParent(), ReplySnapshot.class);
+                messageParent.setContent(ReplySnapshot.preview(messageParent.getContent()));
             } catch (JsonProcessingException e) {
                 log.error(e.getMessage());
             }
@@ -614,7 +574,7 @@ public class MessageService implements IMessageService {
                 .receiverId(chatRequest.getReceiverId())
                 .messageType(chatRequest.getMessageType())
                 .messageStatus(MessageStatus.SENDING)
-                .content(chatRequest.getTextContent())
+                .content(TextContent.of(chatRequest.getTextContent()))
                 .messagesParent(messageParent)
                 .build();
     }
@@ -0,0 +1,121 @@
+package com.project.chatbackend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.project.chatbackend.models.Room;
+import com.project.chatbackend.responses.NotifyEvent;
+import com.project.chatbackend.responses.UserNotify;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * gửi UserNotify tới /user/{id}/queue/messages, kèm NotifyEvent (v2) tới /user/{id}/queue/events
+ * cho user đã subscribe v2. gửi cho nhiều user thì payload được encode 1 lần thành byte[],
+ * broker chỉ chép header khi gửi tới từng session
+ */
+@Component
+public class NotificationDispatcher {
+    private static final String USER_QUEUE = "/queue/messages";
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final ObjectMapper stompObjectMapper;
+    private final NotifyProtocolRegistry notifyProtocolRegistry;
+
+    public NotificationDispatcher(SimpMessagingTemplate simpMessagingTemplate,
+                                  @Qualifier("stompObjectMapper") ObjectMapper stompObjectMapper,
+                                  NotifyProtocolRegistry notifyProtocolRegistry) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.stompObjectMapper = stompObjectMapper;
+        this.notifyProtocolRegistry = notifyProtocolRegistry;
+    }
+
+    public void notifyUser(String userId, UserNotify notify) {
+        simpMessagingTemplate.convertAndSendToUser(userId, USER_QUEUE, notify);
+        if (notifyProtocolRegistry.userWantsV2(userId)) {
+            simpMessagingTemplate.convertAndSendToUser(userId, NotifyProtocolRegistry.EVENTS_QUEUE, NotifyEvent.from(notify));
+        }
+    }
+
+    // cùng 1 payload cho mọi user
+    public void sendToUsers(Collection<String> userIds, UserNotify notify) {
+        if (userIds.isEmpty()) return;
+        Message<byte[]> encoded = toMessage(encode(notify));
+        Message<byte[]> event = null;
+        for (String userId : userIds) {
+            sendToUser(userId, USER_QUEUE, encoded);
+            if (!notifyProtocolRegistry.userWantsV2(userId)) continue;
+            if (event == null) event = toMessage(encode(NotifyEvent.from(notify)));
+            sendToUser(userId, NotifyProtocolRegistry.EVENTS_QUEUE, event);
+        }
+    }
+
+    /**
+     * payload chỉ khác nhau ở room (CREATE_GROUP, ...): message encode 1 lần thành RawValue,
+     * mỗi user chỉ encode RoomNotify (cùng field, cùng thứ tự với UserNotify) với room của mình
+     */
+    public void sendWithRooms(UserNotify shared, Map<String, Room> roomsByUser) {
+        if (roomsByUser.isEmpty()) return;
+        if (shared.getRoom() != null) throw new IllegalArgumentException("shared notify must not carry a room");
+        RawValue message = shared.getMessage() != null ? new RawValue(encodeToString(shared.getMessage())) : null;
+        for (Map.Entry<String, Room> entry : roomsByUser.entrySet()) {
+            RoomNotify notify = new RoomNotify(shared.getReceiverId(), shared.getSenderId(), shared.getStatus(),
+                    message, entry.getValue(), shared.getEventId());
+            sendToUser(entry.getKey(), USER_QUEUE, toMessage(encode(notify)));
+            if (notifyProtocolRegistry.userWantsV2(entry.getKey())) {
+                simpMessagingTemplate.convertAndSendToUser(entry.getKey(), NotifyProtocolRegistry.EVENTS_QUEUE,
+                        NotifyEvent.from(shared, entry.getValue()));
+            }
+        }
+    }
+
+    private void sendToUser(String userId, String queue, Message<byte[]> encoded) {
+        simpMessagingTemplate.send("/user/" + userId + queue, encoded);
+    }
+
+    private byte[] encode(Object payload) {
+        try {
+            return stompObjectMapper.writeValueAsBytes(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("cannot encode " + payload.getClass(), e);
+        }
+    }
+
+    private String encodeToString(Object payload) {
+        try {
+            return stompObjectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("cannot encode " + payload.getClass(), e);
+        }
+    }
+
+    private Message<byte[]> toMessage(byte[] payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        MessageHeaders headers = accessor.getMessageHeaders();
+        return MessageBuilder.createMessage(payload, headers);
+    }
+
+    // json giống UserNotify, message đã encode sẵn được ghi nguyên văn
+    @Getter
+    @AllArgsConstructor
+    static class RoomNotify {
+        private final String receiverId;
+        private final String senderId;
+        private final String status;
+        private final RawValue message;
+        private final Room room;
+        private final String eventId;
+    }
+}
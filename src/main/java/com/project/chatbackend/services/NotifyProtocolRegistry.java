@@ -0,0 +1,88 @@
+package com.project.chatbackend.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * theo dõi user/nhóm nào có session subscribe giao thức v2 để chỉ encode NotifyEvent khi có người nhận.
+ * chat.notify.v2: auto (mặc định, theo subscription trên node này), always (nhiều node: session có thể ở node khác), off
+ */
+@Component
+public class NotifyProtocolRegistry {
+    public static final String EVENTS_QUEUE = "/queue/events";
+    private static final String USER_PREFIX = "/user/";
+    private final Map<String, AtomicInteger> subscribers = new ConcurrentHashMap<>();
+    // sessionId -> subscriptionId -> key
+    private final Map<String, Map<String, String>> subscriptionsBySession = new ConcurrentHashMap<>();
+    @Value("${chat.notify.v2:auto}")
+    private String mode;
+
+    public boolean userWantsV2(String userId) {
+        return wants("user:" + userId);
+    }
+
+    public boolean groupWantsV2(String groupId) {
+        return wants("group:" + groupId);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String key = keyOf(accessor.getDestination(), accessor.getUser());
+        if (key == null || accessor.getSessionId() == null || accessor.getSubscriptionId() == null) return;
+        subscriptionsBySession.computeIfAbsent(accessor.getSessionId(), id -> new ConcurrentHashMap<>())
+                .put(accessor.getSubscriptionId(), key);
+        subscribers.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions = accessor.getSessionId() != null
+                ? subscriptionsBySession.get(accessor.getSessionId()) : null;
+        if (subscriptions == null || accessor.getSubscriptionId() == null) return;
+        String key = subscriptions.remove(accessor.getSubscriptionId());
+        if (key != null) release(key);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = subscriptionsBySession.remove(event.getSessionId());
+        if (subscriptions != null) subscriptions.values().forEach(this::release);
+    }
+
+    private boolean wants(String key) {
+        if ("always".equals(mode)) return true;
+        if ("off".equals(mode)) return false;
+        return subscribers.containsKey(key);
+    }
+
+    private void release(String key) {
+        subscribers.computeIfPresent(key, (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    // /user/{id}/queue/events, /user/queue/events (theo principal), /topic/group.{id}.v2
+    private String keyOf(String destination, Principal user) {
+        if (destination == null) return null;
+        if (destination.equals(USER_PREFIX + EVENTS_QUEUE.substring(1))) {
+            return user != null ? "user:" + user.getName() : null;
+        }
+        if (destination.startsWith(USER_PREFIX) && destination.endsWith(EVENTS_QUEUE)) {
+            return "user:" + destination.substring(USER_PREFIX.length(), destination.length() - EVENTS_QUEUE.length());
+        }
+        if (destination.startsWith(GroupBroadcaster.GROUP_TOPIC_PREFIX) && destination.endsWith(GroupBroadcaster.V2_SUFFIX)) {
+            return "group:" + GroupBroadcaster.groupOf(destination);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,149 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.FileObject;
+import com.project.chatbackend.models.GroupSnapshot;
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.OutboxEvent;
+import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.OutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * gửi lại các outbox event còn sót (instance dừng giữa chừng, hoặc bị FanOutAdmission hoãn) theo batch.
+ * at-least-once: 1 event có thể được gửi 2 lần, client bỏ trùng theo UserNotify.eventId,
+ * room không bị tăng số tin chưa đọc 2 lần nhờ fan_out_message_ids (xem RoomCounterRepositoryImpl.fanOut)
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxDispatcher {
+    private static final Duration LEASE = Duration.ofMinutes(1);
+    private static final Duration MAX_BACKOFF = Duration.ofMinutes(1);
+    private static final int MAX_BATCHES_PER_RUN = 10;
+    private final OutboxRepository outboxRepository;
+    private final MessageRepository messageRepository;
+    private final GroupMembershipCache groupMembershipCache;
+    private final S3UploadAsync s3UploadAsync;
+    private final FanOutAdmission fanOutAdmission;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong pending = new AtomicLong();
+    private final Map<String, Counter> dispatchedCounters = new HashMap<>();
+    @Value("${chat.outbox.batch-size:100}")
+    private int batchSize;
+    @Value("${chat.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @PostConstruct
+    void registerMetrics() {
+        Gauge.builder("chat.outbox.pending", pending, AtomicLong::get)
+                .register(meterRegistry);
+        for (String result : List.of("success", "retry", "failed", "orphan")) {
+            dispatchedCounters.put(result, Counter.builder("chat.outbox.dispatched")
+                    .tag("result", result)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${chat.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+            LocalDateTime now = LocalDateTime.now();
+            List<OutboxEvent> events = outboxRepository.claimBatch(now, now.plus(LEASE), batchSize);
+            dispatchBatch(events);
+            if (events.size() < batchSize) break;
+        }
+        pending.set(outboxRepository.count());
+    }
+
+    private void dispatchBatch(List<OutboxEvent> events) {
+        if (events.isEmpty()) return;
+        Set<String> messageIds = events.stream().map(OutboxEvent::getMessageId).collect(Collectors.toSet());
+        Map<String, Message> messages = messageRepository.findAllById(messageIds).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+        for (OutboxEvent event : interleaveBySender(events)) {
+            Message message = messages.get(event.getMessageId());
+            if (message == null) {
+                // dừng sau khi ghi event nhưng trước khi lưu message => không có gì để gửi
+                dispatched("orphan");
+                outboxRepository.deleteById(event.getEventId());
+                continue;
+            }
+            if (event.getAttempts() >= maxAttempts) {
+                dispatched("failed");
+                fanOutAdmission.markFailed(message);
+                outboxRepository.deleteById(event.getEventId());
+                continue;
+            }
+            if (!isContentUploaded(message)) {
+                // tin nhắn file chưa có fileKey/filePath => thử lại, quá max-attempts thì báo lỗi ở nhánh trên
+                retryLater(event);
+                continue;
+            }
+            GroupSnapshot group = groupMembershipCache.get(message.getReceiverId()).orElse(null);
+            try {
+                s3UploadAsync.deliverAsync(message, event.getSenderName(), group, event.getEventId())
+                        .whenComplete((result, e) -> {
+                            if (e == null) {
+                                dispatched("success");
+                            } else {
+                                log.error("dispatch outbox event {} failed", event.getEventId(), e);
+                                retryLater(event);
+                            }
+                        });
+            } catch (TaskRejectedException e) {
+                retryLater(event);
+            }
+        }
+    }
+
+    private boolean isContentUploaded(Message message) {
+        if (message.getContent() instanceof FileObject fileObject) {
+            return fileObject.getFileKey() != null && fileObject.getFilePath() != null;
+        }
+        return true;
+    }
+
+    private void retryLater(OutboxEvent event) {
+        dispatched("retry");
+        long backoffSeconds = Math.min(1L << Math.min(event.getAttempts(), 16), MAX_BACKOFF.toSeconds());
+        outboxRepository.retryAt(event.getEventId(), LocalDateTime.now().plusSeconds(backoffSeconds));
+    }
+
+    // xen kẽ theo người gửi để 1 user có nhiều event không chiếm hết lượt gửi lại
+    private List<OutboxEvent> interleaveBySender(List<OutboxEvent> events) {
+        Map<String, Deque<OutboxEvent>> bySender = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            bySender.computeIfAbsent(event.getSenderId(), key -> new ArrayDeque<>()).add(event);
+        }
+        List<OutboxEvent> result = new ArrayList<>(events.size());
+        while (!bySender.isEmpty()) {
+            Iterator<Deque<OutboxEvent>> iterator = bySender.values().iterator();
+            while (iterator.hasNext()) {
+                Deque<OutboxEvent> queue = iterator.next();
+                result.add(queue.poll());
+                if (queue.isEmpty()) iterator.remove();
+            }
+        }
+        return result;
+    }
+
+    private void dispatched(String result) {
+        dispatchedCounters.get(result).increment();
+    }
+}
@@ -0,0 +1,56 @@
+package com.project.chatbackend.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.ReplySnapshot;
+import com.project.chatbackend.repositories.MessageRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * lấy tin nhắn được trả lời theo id, các tin trong cùng cuộc trò chuyện
+ * thường được trả lời nhiều lần liên tiếp nên cache bản rút gọn của tin nhắn gốc
+ */
+@Component
+public class ReplyParentResolver {
+    private final LoadingCache<String, Optional<Message>> parents;
+
+    public ReplyParentResolver(MessageRepository messageRepository,
+                               @Value("${cache.reply-parents.max-size:10000}") long maxSize,
+                               @Value("${cache.reply-parents.ttl-minutes:30}") long ttlMinutes) {
+        this.parents = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(Duration.ofMinutes(ttlMinutes))
+                .build(id -> messageRepository.findById(id).map(ReplyParentResolver::toParent));
+    }
+
+    // tin nhắn được trả lời phải thuộc cùng cuộc trò chuyện
+    public Optional<ReplySnapshot> resolve(String messageId, String roomId) {
+        return parents.get(messageId)
+                .filter(parent -> roomId.equals(parent.getRoomId()))
+                .map(ReplySnapshot::from);
+    }
+
+    // tin nhắn gốc bị thu hồi/sửa => lần trả lời sau phải đọc lại
+    public void invalidate(String messageId) {
+        parents.invalidate(messageId);
+    }
+
+    // chỉ giữ các field cần cho ReplySnapshot và room_id để kiểm tra cùng cuộc trò chuyện
+    private static Message toParent(Message message) {
+        return Message.builder()
+                .id(message.getId())
+                .roomId(message.getRoomId())
+                .senderId(message.getSenderId())
+                .senderName(message.getSenderName())
+                .senderAvatar(message.getSenderAvatar())
+                .content(ReplySnapshot.preview(message.getContent()))
+                .messageType(message.getMessageType())
+                .sendDate(message.getSendDate())
+                .build();
+    }
+}
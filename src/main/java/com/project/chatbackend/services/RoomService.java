@@ -1,17 +1,22 @@
 package com.project.chatbackend.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.project.chatbackend.exceptions.DataNotFoundException;
 import com.project.chatbackend.models.*;
 import com.project.chatbackend.repositories.GroupRepository;
-import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.IMessageRepositoryQuery;
+import com.project.chatbackend.repositories.RoomLatestRepository;
 import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.UserRepository;
 import com.project.chatbackend.responses.RoomResponse;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -23,7 +28,22 @@ public class RoomService implements IRoomService{
     private final RoomRepository roomRepository;
     private final UserRepository userRepository;
     private final GroupRepository groupRepository;
-    private final MessageRepository messageRepository;
+    private final IMessageRepositoryQuery messageRepositoryQuery;
+    private final RoomLatestRepository roomLatestRepository;
+    private final GroupMembershipCache groupMembershipCache;
+    // chỉ cache room đã tồn tại, ttl để room bị xóa/đổi (rời nhóm, giải tán nhóm) không nằm trong cache mãi
+    private final Cache<String, RoomContext> roomContexts = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    @PostConstruct
+    void evictGroupRoomsOnMembershipChange() {
+        // thêm/xóa thành viên, giải tán nhóm => room context của nhóm phải đọc lại
+        groupMembershipCache.onInvalidate(groupId ->
+                roomContexts.asMap().keySet().removeIf(key -> key.endsWith("|" + groupId)));
+    }
+
     @Override
     public Optional<String> getRoomId(String senderId, String receiverId) {
         Optional<Room> room = roomRepository.findBySenderIdAndReceiverId(senderId, receiverId);
@@ -31,6 +51,22 @@ public class RoomService implements IRoomService{
 
     }
 
+    @Override
+    public Optional<RoomContext> findRoomContext(String senderId, String receiverId) {
+        // chưa có trong cache => lấy room từ db, chưa có room thì không cache để lần sau tìm lại
+        return Optional.ofNullable(roomContexts.get(contextKey(senderId, receiverId), key ->
+                roomRepository.findBySenderIdAndReceiverId(senderId, receiverId)
+                        .map(room -> new RoomContext(room.getRoomId(), room.getRoomType()))
+                        .orElse(null)));
+    }
+
+    @Override
+    public RoomContext openSingleRoom(String senderId, String receiverId) {
+        RoomContext roomContext = new RoomContext(createRoomId(senderId, receiverId), RoomType.SINGLE_CHAT);
+        roomContexts.put(contextKey(senderId, receiverId), roomContext);
+        return roomContext;
+    }
+
     @Override
     public Room createRoomForGroup(String userId, String groupId) {
         Room room = Room.builder()
@@ -68,6 +104,8 @@ public class RoomService implements IRoomService{
                     .avatar(user.getAvatar())
                     .sender(room.isSender())
                     .roomStatus(room.getRoomStatus())
+                    .lastSeenAt(room.getLastSeenAt())
+                    .lastSeenMessageId(room.getLastSeenMessageId())
                     .roomType(room.getRoomType())
                     .name(user.getName())
                     .build();
@@ -85,6 +123,8 @@ public class RoomService implements IRoomService{
                     .avatar(group.getAvatar())
                     .sender(room.isSender())
                     .roomStatus(room.getRoomStatus())
+                    .lastSeenAt(room.getLastSeenAt())
+                    .lastSeenMessageId(room.getLastSeenMessageId())
                     .roomType(room.getRoomType())
                     .name(group.getGroupName())
                     .build();
@@ -95,21 +135,22 @@ public class RoomService implements IRoomService{
     @Override
     public void updateStatusRoom(String id) {
         Room room = roomRepository.findById(id).orElseThrow();
-        List<Message> messages = messageRepository.
-                getAllByRoomIdAndMessageStatus(room.getRoomId(), MessageStatus.RECEIVED);
-        List<Message> messages1 = messageRepository
-                .getAllByRoomIdAndMessageStatus(room.getRoomId(), MessageStatus.SEEN);
-        for(Message msg : messages) {
-            msg.setMessageStatus(MessageStatus.SEEN);
-            messageRepository.save(msg);
-        }
-        for (Message msg: messages1) {
-            msg.setMessageStatus(MessageStatus.SEEN);
-            messageRepository.save(msg);
-        }
-        room.setNumberOfUnreadMessage(0);
-        roomRepository.save(room);
+        markSeen(room.getRoomId(), room.getSenderId());
+    }
 
+    /**
+     * watermark là tin nhắn mới nhất của room tại thời điểm xem, lưu trên room và trả về trong RoomResponse,
+     * tin nhắn đến sau watermark vẫn giữ trạng thái chưa xem.
+     * SEEN trên từng tin nhắn vẫn được ghi (1 lệnh updateMany) vì lịch sử tin nhắn đọc trạng thái từ đó
+     */
+    @Override
+    public Optional<RoomLatest> markSeen(String roomId, String userId) {
+        Optional<RoomLatest> latest = roomLatestRepository.findLatestInRoom(roomId);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime watermark = latest.map(RoomLatest::getSendDate).orElse(now);
+        messageRepositoryQuery.markSeenUpTo(roomId, userId, watermark, now);
+        roomRepository.markSeen(roomId, userId, latest.map(RoomLatest::getMessageId).orElse(null), watermark);
+        return latest;
     }
 
     @Override
@@ -130,6 +171,10 @@ public class RoomService implements IRoomService{
         return roomRepository.findByRoomId(roomId);
     }
 
+    private static String contextKey(String senderId, String receiverId) {
+        return senderId + "|" + receiverId;
+    }
+
     private String createRoomId(String senderId, String receiverId) {
         var roomId = String.format("%s_%s", senderId, receiverId);
         LocalDateTime time = LocalDateTime.now();
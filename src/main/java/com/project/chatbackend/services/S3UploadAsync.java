@@ -1,14 +1,13 @@
 package com.project.chatbackend.services;
 
 import com.project.chatbackend.models.*;
-import com.project.chatbackend.repositories.GroupRepository;
 import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.RoomLatestRepository;
+import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.UserRepository;
-import com.project.chatbackend.requests.ChatRequest;
 import com.project.chatbackend.responses.UserNotify;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
@@ -17,28 +16,33 @@ import software.amazon.awssdk.transfer.s3.model.FileUpload;
 import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class S3UploadAsync {
-    private final GroupRepository groupRepository;
     private final UserRepository userRepository;
-    private final SimpMessagingTemplate simpMessagingTemplate;
-    private final RoomService roomService;
+    private final NotificationDispatcher notificationDispatcher;
     private final MessageRepository messageRepository;
+    private final RoomRepository roomRepository;
+    private final RoomLatestRepository roomLatestRepository;
+    private final MessageOutbox messageOutbox;
+    private final GroupBroadcaster groupBroadcaster;
 
 
     @Async("asyncExecutor")
-    public void uploadToS3(Message message,
+    public CompletableFuture<Void> uploadToS3(Message message,
                            S3TransferManager transferManager,
                            UploadFileRequest uploadFileRequest,
                            Map<String, String> fileInfo,
                            String filename,
-                           long filSize) {
+                           long filSize,
+                           GroupSnapshot group) {
         String fileKey = fileInfo.keySet().stream().findFirst().orElseThrow();
         String filePath = fileInfo.get(fileKey);
         String fileName = Objects.requireNonNull(filename.split("\\."))[0];
@@ -55,123 +59,68 @@ public class S3UploadAsync {
         log.info("upload successfully: " + uploadResult.response().eTag());
         transferManager.close();
         message.setContent(fileObject);
+        // lưu fileKey/filePath trước khi mở event => dispatcher không bao giờ gửi tin file chưa có nội dung
+        messageRepository.save(message);
+        String senderName = message.getSenderName();
+        if (group != null && senderName == null) {
+            senderName = userRepository.findByEmail(message.getSenderId()).map(User::getName).orElse("");
+        }
+        String eventId = messageOutbox.open(message, senderName);
         message.setMessageStatus(MessageStatus.SENT);
         LocalDateTime time = LocalDateTime.now();
         message.setSendDate(time);
         messageRepository.save(message);
-        List<Room> rooms = roomService.findByRoomId(message.getRoomId());
-        Group group = null;
-        if(isGroupChat(message.getRoomId())) {
-            group = groupRepository.findById(message.getRoomId()).orElseThrow();
-        }
-        for (Room room : rooms) {
-            if(group != null){
-                List<String> members = group.getMembers();
-                if(!members.contains(room.getSenderId())) continue;
-            }
-            if (Objects.equals(room.getSenderId(), message.getSenderId())) {
-                if(message.getContent() instanceof FileObject) {
-                    room.setLatestMessage(message.getMessageType().toString());
-                } else room.setLatestMessage(message.getContent().toString());
-                room.setTime(time);
-                room.setSender(true);
-                room.setNumberOfUnreadMessage(0);
-                Room roomRs = roomService.saveRoom(room);
-                UserNotify success = UserNotify.builder()
-                        .status("SUCCESS")
-                        .senderId(message.getSenderId())
-                        .receiverId(message.getReceiverId())
-                        .message(message)
-                        .room(roomRs)
-                        .build();
-                simpMessagingTemplate.convertAndSendToUser(
-                        message.getSenderId(), "queue/messages",
-                        success
-                );
-            } else {
-                User user = userRepository.findByEmail(message.getSenderId()).orElseThrow();
-                if (message.getContent() instanceof FileObject) {
-                    if(isGroupChat(room.getRoomId())) {
-                        room.setLatestMessage(user.getName() + ": " +message.getMessageType().toString());
-                    } else {
-                        room.setLatestMessage(message.getMessageType().toString());
-                    }
-
-                } else {
-                    if(isGroupChat(room.getRoomId())) {
-                        room.setLatestMessage(user.getName() + ": " + message.getContent().toString());
-                    } else
-                        room.setLatestMessage(message.getContent().toString());
-                }
-                room.setNumberOfUnreadMessage(room.getNumberOfUnreadMessage() + 1);
-                room.setTime(time);
-                room.setSender(false);
-                roomService.saveRoom(room);
-            }
-        }
-
-        UserNotify sent = UserNotify.builder()
-                .status("SENT")
-                .senderId(message.getSenderId())
-                .receiverId(message.getReceiverId())
-                .message(message)
-                .build();
-        simpMessagingTemplate.convertAndSendToUser(
-                message.getReceiverId(), "queue/messages",
-                sent
-        );
+        updateRoomsAndNotify(message, senderName, group, time, eventId);
+        messageOutbox.close(eventId);
+        return CompletableFuture.completedFuture(null);
     }
 
+    // gọi qua FanOutAdmission/OutboxDispatcher, future hoàn thành khi đã fan-out xong
     @Async("asyncExecutor")
-    public void saveMessageAsync(Message message, ChatRequest chatRequest, Group group) {
-        LocalDateTime time = LocalDateTime.now();
-        message.setMessageStatus(MessageStatus.SENT);
-        message.setSendDate(time);
-        messageRepository.save(message);
-        List<Room> rooms = roomService.findByRoomId(message.getRoomId());
+    public CompletableFuture<Void> deliverAsync(Message message, String senderName, GroupSnapshot group, String eventId) {
+        deliverNow(message, senderName, group, eventId);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * chạy trên thread gọi: chuyển message sang SENT (nếu chưa), cập nhật room, thông báo rồi xóa outbox event.
+     * message đã ở trạng thái SENT => chỉ cập nhật room và thông báo
+     */
+    public void deliverNow(Message message, String senderName, GroupSnapshot group, String eventId) {
+        if (message.getMessageStatus() != MessageStatus.SENT) {
+            message.setMessageStatus(MessageStatus.SENT);
+            message.setSendDate(LocalDateTime.now());
+            messageRepository.save(message);
+        }
+        if (group != null && senderName == null) {
+            senderName = userRepository.findByEmail(message.getSenderId()).map(User::getName).orElse("");
+        }
+        updateRoomsAndNotify(message, senderName, group, message.getSendDate(), eventId);
+        messageOutbox.close(eventId);
+    }
 
-        for (Room room : rooms) {
-            if(group != null) {
-                List<String> members = group.getMembers();
-                if(!members.contains(room.getSenderId())) continue;
-            }
-            if (Objects.equals(room.getSenderId(), message.getSenderId())) {
-                if (message.getContent() instanceof FileObject) room.setLatestMessage(message.getMessageType().toString());
-                else room.setLatestMessage(message.getContent().toString());
-                room.setTime(time);
-                room.setSender(true);
-                room.setNumberOfUnreadMessage(0);
-                Room roomRs = roomService.saveRoom(room);
-                UserNotify success = UserNotify.builder()
-                        .status("SUCCESS")
-                        .senderId(message.getSenderId())
-                        .receiverId(message.getReceiverId())
-                        .message(message)
-                        .room(roomRs)
-                        .build();
-                simpMessagingTemplate.convertAndSendToUser(
-                        message.getSenderId(), "queue/messages",
-                        success
-                );
-            } else {
-                if (message.getContent() instanceof FileObject) {
-                    if(isGroupChat(room.getRoomId())) {
-                        room.setLatestMessage(chatRequest.getSenderName() + ": " +message.getMessageType().toString());
-                    } else {
-                        room.setLatestMessage(message.getMessageType().toString());
-                    }
+    private void updateRoomsAndNotify(Message message, String senderName, GroupSnapshot group,
+                                      LocalDateTime time, String eventId) {
+        roomLatestRepository.advance(message);
+        String preview = message.getContent().toPreview(message.getMessageType());
+        // nhóm chat => chỉ cập nhật room của các thành viên hiện tại
+        Collection<String> receiverIds = group != null
+                ? group.getMembers()
+                : List.of(message.getReceiverId());
+        String receiverPreview = group != null ? senderName + ": " + preview : preview;
+        Room roomRs = roomRepository.fanOut(message.getRoomId(), message.getSenderId(), receiverIds,
+                message.getId(), preview, receiverPreview, time);
 
-                } else {
-                    if(isGroupChat(room.getRoomId())) {
-                        room.setLatestMessage(chatRequest.getSenderName() + ": " + message.getContent().toString());
-                    } else
-                        room.setLatestMessage(message.getContent().toString());
-                }
-                room.setNumberOfUnreadMessage(room.getNumberOfUnreadMessage() + 1);
-                room.setTime(time);
-                room.setSender(false);
-                roomService.saveRoom(room);
-            }
+        if (roomRs != null) {
+            UserNotify success = UserNotify.builder()
+                    .status("SUCCESS")
+                    .senderId(message.getSenderId())
+                    .receiverId(message.getReceiverId())
+                    .message(message)
+                    .room(roomRs)
+                    .eventId(eventId)
+                    .build();
+            notificationDispatcher.notifyUser(message.getSenderId(), success);
         }
 
         UserNotify sent = UserNotify.builder()
@@ -179,15 +128,13 @@ public class S3UploadAsync {
                 .senderId(message.getSenderId())
                 .receiverId(message.getReceiverId())
                 .message(message)
+                .eventId(eventId)
                 .build();
-
-        simpMessagingTemplate.convertAndSendToUser(
-                message.getReceiverId(), "queue/messages",
-                sent
-        );
-    }
-
-    private boolean isGroupChat(String roomId) {
-        return groupRepository.findById(roomId).isPresent();
+        // nhóm chat => 1 lần encode cho cả nhóm
+        if (group != null) {
+            groupBroadcaster.publish(group.getId(), sent);
+            return;
+        }
+        notificationDispatcher.notifyUser(message.getReceiverId(), sent);
     }
 }
@@ -2,6 +2,7 @@ package com.project.chatbackend.services;
 
 
 import com.project.chatbackend.exceptions.MaxFileSizeException;
+import com.project.chatbackend.models.GroupSnapshot;
 import com.project.chatbackend.models.Message;
 import com.project.chatbackend.responses.ProgressNotify;
 import lombok.RequiredArgsConstructor;
@@ -24,10 +25,12 @@ import software.amazon.awssdk.transfer.s3.progress.LoggingTransferListener;
 import software.amazon.awssdk.transfer.s3.progress.TransferListener;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -42,17 +45,31 @@ public class S3UploadService {
     @Value("${amazon-properties.region}")
     private String region;
     private final S3UploadAsync s3UploadAsync;
+    private final FanOutAdmission fanOutAdmission;
     private final SimpMessagingTemplate messagingTemplate;
 
 
 
-    public void uploadFile(MultipartFile file, Message message) throws IOException, MaxFileSizeException {
+    public void uploadFile(MultipartFile file, Message message, GroupSnapshot group) throws IOException, MaxFileSizeException {
         if(file.getSize() > 500 * 1024 * 1024) {
             throw new MaxFileSizeException("file is too large! Maximum size is 500MB");
         }
-        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(accessKey, secretKey);
         String fileName = file.getOriginalFilename();
         String key = generateUniqueKey(fileName);
+        Map<String, String> fileInfo = new HashMap<>();
+        fileInfo.put(key, "https://" + bucketName + ".s3." + region + ".amazonaws.com/" + key);
+        assert fileName != null;
+        // S3 client và file tạm chỉ tạo sau khi FanOutAdmission đã cấp slot cho user
+        try {
+            fanOutAdmission.upload(message, () -> startUpload(file, message, group, key, fileInfo, fileName));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private CompletableFuture<Void> startUpload(MultipartFile file, Message message, GroupSnapshot group,
+                                                String key, Map<String, String> fileInfo, String fileName) {
+        AwsCredentialsProvider credentialsProvider = () -> AwsBasicCredentials.create(accessKey, secretKey);
         S3AsyncClient s3AsyncClient = S3AsyncClient.crtBuilder()
                 .credentialsProvider(credentialsProvider)
                 .region(Region.AP_SOUTHEAST_1)
@@ -74,19 +91,38 @@ public class S3UploadService {
             }
 
         };
-        Path tempFile = Files.createTempFile("temp", file.getOriginalFilename());
-        Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
-        PutObjectRequest request = PutObjectRequest.builder()
-                        .bucket(bucketName).key(key).build();
-        UploadFileRequest uploadFileRequest = UploadFileRequest.builder()
-                .putObjectRequest(request)
-                .addTransferListener(transferListener)
-                .source(tempFile)
-                .build();
-        Map<String, String> fileInfo = new HashMap<>();
-        fileInfo.put(key, "https://" + bucketName + ".s3." + region + ".amazonaws.com/" + key);
-        assert fileName != null;
-        s3UploadAsync.uploadToS3(message, transferManager, uploadFileRequest, fileInfo, fileName, file.getSize());
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile("temp", file.getOriginalFilename());
+            Files.copy(file.getInputStream(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+            PutObjectRequest request = PutObjectRequest.builder()
+                            .bucket(bucketName).key(key).build();
+            UploadFileRequest uploadFileRequest = UploadFileRequest.builder()
+                    .putObjectRequest(request)
+                    .addTransferListener(transferListener)
+                    .source(tempFile)
+                    .build();
+            return s3UploadAsync.uploadToS3(message, transferManager,
+                    uploadFileRequest, fileInfo, fileName, file.getSize(), group);
+        } catch (IOException e) {
+            discard(s3AsyncClient, transferManager, tempFile);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            // executor đầy (TaskRejectedException): upload không chạy => không để lại client, file tạm
+            discard(s3AsyncClient, transferManager, tempFile);
+            throw e;
+        }
+    }
+
+    private void discard(S3AsyncClient s3AsyncClient, S3TransferManager transferManager, Path tempFile) {
+        transferManager.close();
+        s3AsyncClient.close();
+        if (tempFile == null) return;
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            log.warn("cannot delete temp file {}", tempFile, e);
+        }
     }
 
     private String generateUniqueKey(String originalFileName) {
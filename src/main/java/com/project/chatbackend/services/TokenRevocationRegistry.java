@@ -0,0 +1,154 @@
+package com.project.chatbackend.services;
+
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.project.chatbackend.models.RevokedToken;
+import com.project.chatbackend.models.Token;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * tập jti đã bị thu hồi giữ trong bộ nhớ của mỗi instance:
+ * - instance thu hồi token ghi vào revoked_tokens và cập nhật ngay bộ nhớ của nó
+ * - các instance khác nhận qua change stream của revoked_tokens
+ * - mongo không hỗ trợ change stream (standalone) hoặc stream bị lỗi => poll theo revoked_at
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationRegistry {
+    private static final String COLLECTION = "revoked_tokens";
+    private final MongoTemplate mongoTemplate;
+    private final TokenValidationCache tokenValidationCache;
+    // jti -> thời điểm token hết hạn, quá thời điểm này thì không cần giữ nữa
+    private final Map<String, Instant> revokedJtis = new ConcurrentHashMap<>();
+    @Value("${token.revocation.change-stream:true}")
+    private boolean useChangeStream;
+    private volatile boolean changeStreamActive;
+    private volatile boolean running = true;
+    private volatile MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor;
+    private volatile LocalDateTime lastPolledAt;
+
+    public boolean isRevoked(String jti) {
+        return revokedJtis.containsKey(jti);
+    }
+
+    public void revoke(Token token) {
+        revoke(List.of(token));
+    }
+
+    // ghi tất cả jti bằng 1 lệnh bulkWrite, upsert để thu hồi lại 1 token không bị lỗi trùng khóa
+    public void revoke(Collection<Token> tokens) {
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, RevokedToken.class);
+        int operations = 0;
+        for (Token token : tokens) {
+            tokenValidationCache.revoke(token.getAccessToken());
+            if (token.getJti() == null) continue;
+            LocalDateTime expiresAt = token.getExpirationDateAccessToken() != null
+                    ? token.getExpirationDateAccessToken()
+                    : now;
+            revokedJtis.put(token.getJti(), toInstant(expiresAt));
+            bulkOperations.upsert(new Query(Criteria.where("_id").is(token.getJti())),
+                    new Update().setOnInsert("revoked_at", now).setOnInsert("expires_at", expiresAt));
+            operations++;
+        }
+        if (operations > 0) bulkOperations.execute();
+    }
+
+    /**
+     * chạy khi khởi tạo bean, trước khi Tomcat nhận request => không có request nào thấy tập rỗng
+     * change stream mở trước khi tải revoked_tokens: token bị node khác thu hồi trong lúc tải vẫn nằm trong stream
+     */
+    @PostConstruct
+    public void start() {
+        LocalDateTime loadedFrom = LocalDateTime.now();
+        MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = useChangeStream ? openChangeStream() : null;
+        // không có stream thì lần poll đầu lấy từ trước lúc tải
+        lastPolledAt = loadedFrom;
+        mongoTemplate.find(new Query(Criteria.where("expires_at").gt(loadedFrom)), RevokedToken.class)
+                .forEach(this::remember);
+        if (changeStream != null) {
+            Thread watcher = new Thread(() -> watch(changeStream), "token-revocation-watcher");
+            watcher.setDaemon(true);
+            watcher.start();
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream() {
+        try {
+            MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = mongoTemplate
+                    .getCollection(COLLECTION)
+                    .watch(List.of(Aggregates.match(Filters.eq("operationType", "insert"))))
+                    .cursor();
+            cursor = changeStream;
+            changeStreamActive = true;
+            log.info("watching {} change stream", COLLECTION);
+            return changeStream;
+        } catch (Exception e) {
+            log.warn("{} change stream unavailable, fallback to polling: {}", COLLECTION, e.getMessage());
+            return null;
+        }
+    }
+
+    private void watch(MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream) {
+        try (changeStream) {
+            while (running && changeStream.hasNext()) {
+                Document document = changeStream.next().getFullDocument();
+                if (document == null) continue;
+                revokedJtis.put(document.getString("_id"), document.getDate("expires_at").toInstant());
+            }
+        } catch (Exception e) {
+            if (running) log.warn("{} change stream stopped, fallback to polling: {}", COLLECTION, e.getMessage());
+        } finally {
+            changeStreamActive = false;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${token.revocation.poll-interval-ms:5000}")
+    public void poll() {
+        Instant now = Instant.now();
+        revokedJtis.values().removeIf(expiresAt -> expiresAt.isBefore(now));
+        if (changeStreamActive || lastPolledAt == null) return;
+        // lùi lại 1 chút để không bỏ sót bản ghi ghi cùng thời điểm với lần poll trước
+        LocalDateTime from = lastPolledAt.minusSeconds(1);
+        lastPolledAt = LocalDateTime.now();
+        mongoTemplate.find(new Query(Criteria.where("revoked_at").gte(from)), RevokedToken.class)
+                .forEach(this::remember);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (cursor != null) cursor.close();
+    }
+
+    private void remember(RevokedToken revokedToken) {
+        revokedJtis.put(revokedToken.getJti(), toInstant(revokedToken.getExpiresAt()));
+    }
+
+    private Instant toInstant(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
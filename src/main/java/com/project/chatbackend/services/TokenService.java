@@ -11,13 +11,18 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TokenService implements ITokenService {
     private final TokenRepository tokenRepository;
+    private final TokenValidationCache tokenValidationCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
     @Override
     public void save(Token token) {
         tokenRepository.save(token);
+        if (token.isRevoked()) tokenRevocationRegistry.revoke(token);
+        else tokenValidationCache.allow(token.getAccessToken());
     }
 
     @Override
     public void delete(String id) {
+        tokenRepository.findById(id).ifPresent(tokenRevocationRegistry::revoke);
         tokenRepository.deleteById(id);
     }
 
@@ -0,0 +1,45 @@
+package com.project.chatbackend.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.project.chatbackend.repositories.TokenRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * trạng thái của access token (còn hiệu lực hay đã bị xóa/thu hồi) giữ trong bộ nhớ,
+ * được cập nhật ngay khi token được ghi/xóa trên instance này,
+ * ttl ngắn để thay đổi từ instance khác cũng được áp dụng sau tối đa ttl giây
+ */
+@Component
+public class TokenValidationCache {
+    private final TokenRepository tokenRepository;
+    private final Cache<String, Boolean> tokens;
+
+    public TokenValidationCache(TokenRepository tokenRepository,
+                                @Value("${cache.tokens.max-size:50000}") long maxSize,
+                                @Value("${cache.tokens.ttl-seconds:60}") long ttlSeconds) {
+        this.tokenRepository = tokenRepository;
+        this.tokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public boolean isActive(String accessToken) {
+        return tokens.get(accessToken, token -> tokenRepository.findByAccessToken(token)
+                .map(t -> !t.isRevoked())
+                .orElse(false));
+    }
+
+    public void allow(String accessToken) {
+        if (accessToken != null) tokens.put(accessToken, true);
+    }
+
+    public void revoke(String accessToken) {
+        if (accessToken != null) tokens.put(accessToken, false);
+    }
+}
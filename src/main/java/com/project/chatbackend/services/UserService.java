@@ -6,6 +6,7 @@ import com.project.chatbackend.models.Otp;
 import com.project.chatbackend.models.Token;
 import com.project.chatbackend.models.User;
 import com.project.chatbackend.repositories.OTPRepository;
+import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.TokenRepository;
 import com.project.chatbackend.repositories.UserRepository;
 import com.project.chatbackend.requests.*;
@@ -35,6 +36,9 @@ public class UserService implements IUserService {
     private final JwtService jwtService;
     private final TokenRepository tokenRepository;
     private final OTPRepository otpRepository;
+    private final RoomRepository roomRepository;
+    private final TokenValidationCache tokenValidationCache;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
     @Value("${jwt.expiration}")
     private long expiration;
     @Value("${jwt.expiration-refresh-token}")
@@ -71,10 +75,12 @@ public class UserService implements IUserService {
             );
             User user = optionalUser.get();
             UserDetailConfig userDetailConfig = new UserDetailConfig(user);
-            var jwt = jwtService.generateToken(userDetailConfig);
+            String jti = UUID.randomUUID().toString();
+            var jwt = jwtService.generateToken(userDetailConfig, jti);
             var refreshToken = jwtService.generateRefreshToken(new HashMap<>(), userDetailConfig);
             Token token = Token.builder()
                     .accessToken(jwt)
+                    .jti(jti)
                     .user(user)
                     .refreshToken(refreshToken)
                     .tokenType("Bearer")
@@ -90,8 +96,12 @@ public class UserService implements IUserService {
             Optional<Token> tokenDelete = tokens.stream()
                     .filter(t -> t.isMobile() == mobile)
                     .min(Comparator.comparing(Token::getExpirationDateAccessToken));
-            tokenDelete.ifPresent(value -> tokenRepository.deleteById(value.getId()));
+            tokenDelete.ifPresent(value -> {
+                tokenRepository.deleteById(value.getId());
+                tokenRevocationRegistry.revoke(value);
+            });
             tokenRepository.save(token);
+            tokenValidationCache.allow(jwt);
             return LoginResponse.builder()
                     .accessToken(jwt)
                     .refreshToken(refreshToken)
@@ -113,10 +123,19 @@ public class UserService implements IUserService {
             User user = userRepository.findByEmail(email)
                     .orElseThrow(() -> new UsernameNotFoundException("not found"));
             UserDetailConfig userDetailConfig = new UserDetailConfig(user);
-            String newToken = jwtService.generateToken(userDetailConfig);
+            Token oldToken = Token.builder()
+                    .jti(token.getJti())
+                    .accessToken(token.getAccessToken())
+                    .expirationDateAccessToken(token.getExpirationDateAccessToken())
+                    .build();
+            String jti = UUID.randomUUID().toString();
+            String newToken = jwtService.generateToken(userDetailConfig, jti);
             token.setAccessToken(newToken);
+            token.setJti(jti);
             token.setExpirationDateAccessToken(LocalDateTime.now().plusSeconds(expiration));
             tokenRepository.save(token);
+            tokenRevocationRegistry.revoke(oldToken);
+            tokenValidationCache.allow(newToken);
             return LoginResponse.builder()
                     .accessToken(newToken)
                     .refreshToken(refreshToken)
@@ -218,9 +237,9 @@ public class UserService implements IUserService {
                 userRepository.save(user);
                 List<Token> tokens = tokenRepository.findAllByUserEmail(user.getEmail());
                 if(!tokens.isEmpty()) {
-                    for (Token token : tokens) {
-                        tokenRepository.deleteById(token.getId());
-                    }
+                    // xóa bằng 1 lệnh deleteMany, thu hồi jti bằng 1 lệnh bulkWrite
+                    tokenRepository.deleteAllById(tokens.stream().map(Token::getId).toList());
+                    tokenRevocationRegistry.revoke(tokens);
                 }
                 return true;
             }
@@ -245,9 +264,9 @@ public class UserService implements IUserService {
                 userRepository.save(user);
                 List<Token> tokens = tokenRepository.findAllByUserEmail(user.getEmail());
                 if(!tokens.isEmpty()) {
-                    for (Token token : tokens) {
-                        tokenRepository.deleteById(token.getId());
-                    }
+                    // xóa bằng 1 lệnh deleteMany, thu hồi jti bằng 1 lệnh bulkWrite
+                    tokenRepository.deleteAllById(tokens.stream().map(Token::getId).toList());
+                    tokenRevocationRegistry.revoke(tokens);
                 }
                 return true;
 
@@ -267,6 +286,7 @@ public class UserService implements IUserService {
             user.setDateOfBirth(updateUserRequest.getDob());
             user.setNotReceiveMessageToStranger(updateUserRequest.isNotReceiveMessageToStranger());
             User newUser = userRepository.save(user);
+            roomRepository.updateReceiverProfile(newUser.getEmail(), newUser.getName(), newUser.getAvatar());
             return convertUserResponse(Optional.of(newUser));
         }else {
             throw new DataNotFoundException("user not found");
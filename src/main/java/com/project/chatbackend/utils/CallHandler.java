@@ -2,19 +2,21 @@ package com.project.chatbackend.utils;
 
 import com.project.chatbackend.models.*;
 import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.RoomLatestRepository;
 import com.project.chatbackend.repositories.RoomRepository;
 import com.project.chatbackend.repositories.UserRepository;
 import com.project.chatbackend.responses.UserNotify;
+import com.project.chatbackend.services.IRoomService;
+import com.project.chatbackend.services.NotificationDispatcher;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * xử lý cuộc gọi
@@ -23,10 +25,12 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class CallHandler {
     private ScheduledExecutorService scheduledExecutorService;
-    private final SimpMessagingTemplate simpMessagingTemplate;
+    private final NotificationDispatcher notificationDispatcher;
     private final MessageRepository messageRepository;
     private final RoomRepository roomRepository;
+    private final RoomLatestRepository roomLatestRepository;
     private final UserRepository userRepository;
+    private final IRoomService roomService;
 
     // hàm này sẽ được thực thi sau 1 phút khi user a yêu cầu 1 cuộc gọi với user b
     // mà user b không phản hồi (missed call)
@@ -42,74 +46,39 @@ public class CallHandler {
     // hàm này sẽ ngừng schedule (user b chấp nhận cuộc gọi)
     public void acceptCall(Message message) {
         scheduledExecutorService.shutdownNow();
-        CallInfo callInfo = (CallInfo) message.getContent();
+        CallInfo callInfo = callInfoOf(message);
         callInfo.setStartTime(LocalDateTime.now());
         callInfo.setCallStatus(CallStatus.CALLING);
         message.setContent(callInfo);
         Message newMessage = messageRepository.save(message);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
-        if(latestMessage.getId().equals(newMessage.getId())) {
-            List<Room> rooms = roomRepository.findByRoomId(newMessage.getRoomId());
-            for (Room room : rooms) {
-                room.setLatestMessage("Cuộc gọi đang diễn ra");
-                roomRepository.save(room);
-            }
+        if(roomLatestRepository.isLatestInRoom(newMessage)) {
+            roomRepository.replaceLatestMessageExcept(newMessage.getRoomId(), null, "Cuộc gọi đang diễn ra");
         }
         notify(message.getSenderId(), "", "ACCEPT_CALL");
     }
 
     public void endCall(Message message) {
-        CallInfo callInfo = (CallInfo) message.getContent();
+        CallInfo callInfo = callInfoOf(message);
         callInfo.setCallStatus(CallStatus.END);
         callInfo.setEndTime(LocalDateTime.now());
         callInfo.setDuration(callInfo.getEndTime().toEpochSecond(ZoneOffset.UTC) -
                 callInfo.getStartTime().toEpochSecond(ZoneOffset.UTC));
         message.setContent(callInfo);
         Message newMessage = messageRepository.save(message);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
-        if(latestMessage.getId().equals(newMessage.getId())) {
-            List<Room> rooms = roomRepository.findByRoomId(newMessage.getRoomId());
-            for (Room room : rooms) {
-                if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                    if (room.getSenderId().equals(newMessage.getSenderId())) {
-                        room.setLatestMessage("Cuộc gọi đã kết thúc");
-                    } else {
-                        User sender = userRepository.findByEmail(newMessage.getSenderId())
-                                .orElseThrow();
-                        room.setLatestMessage(sender.getName() + ": cuộc gọi đã kết thúc");
-                    }
-                } else {
-                    room.setLatestMessage("Cuộc gọi đã kết thúc");
-                }
-                roomRepository.save(room);
-            }
+        if(roomLatestRepository.isLatestInRoom(newMessage)) {
+            updateLatestMessage(newMessage, "Cuộc gọi đã kết thúc", ": cuộc gọi đã kết thúc", "Cuộc gọi đã kết thúc");
         }
         notify(message.getSenderId(), message.getReceiverId(), "END_CALL");
     }
 
     public void cancelCall(Message message) {
         scheduledExecutorService.shutdownNow();
-        CallInfo callInfo = (CallInfo) message.getContent();
+        CallInfo callInfo = callInfoOf(message);
         callInfo.setCallStatus(CallStatus.CANCEL);
         message.setContent(callInfo);
         Message newMessage = messageRepository.save(message);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
-        if(latestMessage.getId().equals(newMessage.getId())) {
-            List<Room> rooms = roomRepository.findByRoomId(newMessage.getRoomId());
-            for (Room room : rooms) {
-                if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                    if (room.getSenderId().equals(newMessage.getSenderId())) {
-                        room.setLatestMessage("đã hủy cuộc gọi");
-                    } else {
-                        User sender = userRepository.findByEmail(newMessage.getSenderId())
-                                .orElseThrow();
-                        room.setLatestMessage(sender.getName() + ": đã hủy cuộc gọi");
-                    }
-                } else {
-                    room.setLatestMessage("Đã hủy cuộc gọi");
-                }
-                roomRepository.save(room);
-            }
+        if(roomLatestRepository.isLatestInRoom(newMessage)) {
+            updateLatestMessage(newMessage, "đã hủy cuộc gọi", ": đã hủy cuộc gọi", "Đã hủy cuộc gọi");
         }
         notify(message.getSenderId(), message.getReceiverId(), "CANCEL_CALL");
 
@@ -117,27 +86,12 @@ public class CallHandler {
 
     public void rejectCall(Message message) {
         scheduledExecutorService.shutdownNow();
-        CallInfo callInfo = (CallInfo) message.getContent();
+        CallInfo callInfo = callInfoOf(message);
         callInfo.setCallStatus(CallStatus.REJECT);
         message.setContent(callInfo);
         Message newMessage = messageRepository.save(message);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
-        if(latestMessage.getId().equals(newMessage.getId())) {
-            List<Room> rooms = roomRepository.findByRoomId(newMessage.getRoomId());
-            for (Room room : rooms) {
-                if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                    if (room.getSenderId().equals(newMessage.getSenderId())) {
-                        room.setLatestMessage("Cuộc gọi thoại đi");
-                    } else {
-                        User sender = userRepository.findByEmail(newMessage.getSenderId())
-                                .orElseThrow();
-                        room.setLatestMessage(sender.getName() + ": cuộc gọi đến");
-                    }
-                } else {
-                    room.setLatestMessage("Cuộc gọi đến");
-                }
-                roomRepository.save(room);
-            }
+        if(roomLatestRepository.isLatestInRoom(newMessage)) {
+            updateLatestMessage(newMessage, "Cuộc gọi thoại đi", ": cuộc gọi đến", "Cuộc gọi đến");
         }
         notify(message.getSenderId(), message.getReceiverId(), "REJECT_CALL");
     }
@@ -157,42 +111,41 @@ public class CallHandler {
                 .receiverId(receiverId)
                 .status(status)
                 .build();
-        if(!senderId.isEmpty()) {
-            simpMessagingTemplate.convertAndSendToUser(
-                    senderId, "queue/messages",
-                    callRequestNotify
-            );
-        }
-        if(!receiverId.isEmpty()) {
-            simpMessagingTemplate.convertAndSendToUser(
-                    receiverId, "queue/messages",
-                    callRequestNotify
-            );
+        // cùng 1 payload cho 2 phía => encode 1 lần
+        notificationDispatcher.sendToUsers(
+                Stream.of(senderId, receiverId).filter(id -> !id.isEmpty()).toList(),
+                callRequestNotify
+        );
+    }
+
+    // cập nhật tin nhắn mới nhất của các room, nhóm chat thì room người gọi khác room các thành viên
+    private void updateLatestMessage(Message message, String senderMessage, String groupMessage, String singleMessage) {
+        boolean groupChat = roomService.findRoomContext(message.getSenderId(), message.getReceiverId())
+                .map(RoomContext::isGroupChat)
+                .orElse(false);
+        if (groupChat) {
+            User sender = userRepository.findByEmail(message.getSenderId())
+                    .orElseThrow();
+            roomRepository.replaceLatestMessage(message.getRoomId(), message.getSenderId(), senderMessage);
+            roomRepository.replaceLatestMessageExcept(message.getRoomId(), message.getSenderId(),
+                    sender.getName() + groupMessage);
+        } else {
+            roomRepository.replaceLatestMessageExcept(message.getRoomId(), null, singleMessage);
         }
     }
 
+    private CallInfo callInfoOf(Message message) {
+        return message.getContent().asCallInfo()
+                .orElseThrow(() -> new IllegalStateException("message " + message.getId() + " is not a call"));
+    }
+
     private void handleMissedCall(Message message) {
-        CallInfo callInfo = (CallInfo) message.getContent();
+        CallInfo callInfo = callInfoOf(message);
         callInfo.setCallStatus(CallStatus.MISSED);
         message.setContent(callInfo);
         Message newMessage = messageRepository.save(message);
-        Message latestMessage = messageRepository.findTopByOrderBySendDateDesc();
-        if(latestMessage.getId().equals(newMessage.getId())) {
-            List<Room> rooms = roomRepository.findByRoomId(newMessage.getRoomId());
-            for (Room room : rooms) {
-                if (room.getRoomType().equals(RoomType.GROUP_CHAT)) {
-                    if (room.getSenderId().equals(newMessage.getSenderId())) {
-                        room.setLatestMessage("Cuộc gọi đến");
-                    } else {
-                        User sender = userRepository.findByEmail(newMessage.getSenderId())
-                                .orElseThrow();
-                        room.setLatestMessage(sender.getName() + ": cuộc gọi đến");
-                    }
-                } else {
-                    room.setLatestMessage("Cuộc gọi đến");
-                }
-                roomRepository.save(room);
-            }
+        if(roomLatestRepository.isLatestInRoom(newMessage)) {
+            updateLatestMessage(newMessage, "Cuộc gọi đến", ": cuộc gọi đến", "Cuộc gọi đến");
         }
 
 
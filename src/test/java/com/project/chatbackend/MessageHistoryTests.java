@@ -0,0 +1,174 @@
+package com.project.chatbackend;
+
+import com.project.chatbackend.models.*;
+import com.project.chatbackend.repositories.IMessageRepositoryQuery;
+import com.project.chatbackend.repositories.UserRepository;
+import com.project.chatbackend.responses.MessageHistoryResponse;
+import com.project.chatbackend.services.GroupMembershipCache;
+import com.project.chatbackend.services.MessageService;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * MessageService.getHistory: cursor "sendDate,id", giới hạn limit, lấy dư 1 tin nhắn để tính nextCursor
+ */
+class MessageHistoryTests {
+    private static final String ROOM_ID = "alice@example.com_bob@example.com";
+    private static final String ALICE = "alice@example.com";
+    private static final String BOB = "bob@example.com";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 12, 0);
+    @Mock
+    private IMessageRepositoryQuery messageRepositoryQuery;
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private GroupMembershipCache groupMembershipCache;
+    @InjectMocks
+    private MessageService messageService;
+    private AutoCloseable mocks;
+
+    @BeforeEach
+    void setUp() {
+        mocks = MockitoAnnotations.openMocks(this);
+        when(groupMembershipCache.get(any())).thenReturn(Optional.empty());
+        when(userRepository.findAllById(any())).thenReturn(List.of());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocks.close();
+    }
+
+    @Test
+    void firstPageHasNoCursorFilter() {
+        messages(3);
+
+        messageService.getHistory(ALICE, ROOM_ID, null, 40);
+
+        verify(messageRepositoryQuery).findHistoryBefore(eq(ROOM_ID), isNull(), isNull(), eq(41));
+    }
+
+    @Test
+    void cursorIsSplitIntoSendDateAndId() {
+        String id = new ObjectId().toHexString();
+        messages(0);
+
+        messageService.getHistory(ALICE, ROOM_ID, START + "," + id, 40);
+
+        verify(messageRepositoryQuery).findHistoryBefore(ROOM_ID, START, id, 41);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> messageService.getHistory(ALICE, ROOM_ID, START.toString(), 40))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> messageService.getHistory(ALICE, ROOM_ID, START + ",not-an-id", 40))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> messageService.getHistory(ALICE, ROOM_ID, "yesterday," + new ObjectId(), 40))
+                .isInstanceOf(DateTimeParseException.class);
+        verifyNoInteractions(messageRepositoryQuery);
+    }
+
+    @Test
+    void limitMustBeBetweenOneAndOneHundred() {
+        assertThatThrownBy(() -> messageService.getHistory(ALICE, ROOM_ID, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> messageService.getHistory(ALICE, ROOM_ID, null, 101))
+                .isInstanceOf(IllegalArgumentException.class);
+        verifyNoInteractions(messageRepositoryQuery);
+
+        messages(0);
+        messageService.getHistory(ALICE, ROOM_ID, null, 1);
+        messageService.getHistory(ALICE, ROOM_ID, null, 100);
+        verify(messageRepositoryQuery).findHistoryBefore(ROOM_ID, null, null, 2);
+        verify(messageRepositoryQuery).findHistoryBefore(ROOM_ID, null, null, 101);
+    }
+
+    @Test
+    void extraMessageYieldsCursorOfTheOldestReturned() {
+        List<Message> newestFirst = messages(3);
+
+        MessageHistoryResponse page = messageService.getHistory(ALICE, ROOM_ID, null, 2);
+
+        assertThat(page.getMessages()).hasSize(2);
+        Message oldest = newestFirst.get(1);
+        assertThat(page.getNextCursor()).isEqualTo(oldest.getSendDate() + "," + oldest.getId());
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        messages(2);
+
+        MessageHistoryResponse page = messageService.getHistory(ALICE, ROOM_ID, null, 2);
+
+        assertThat(page.getMessages()).hasSize(2);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void nonMemberGetsAnEmptyPage() {
+        givenGroup(GroupStatus.ACTIVE, List.of(BOB));
+        messages(3);
+
+        MessageHistoryResponse page = messageService.getHistory(ALICE, ROOM_ID, null, 2);
+
+        assertThat(page.getMessages()).isEmpty();
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void inactiveGroupKeepsPagingThroughSystemMessages() {
+        givenGroup(GroupStatus.INACTIVE, List.of(ALICE));
+        messages(3);
+
+        MessageHistoryResponse page = messageService.getHistory(ALICE, ROOM_ID, null, 2);
+
+        assertThat(page.getMessages()).allMatch(message -> message.getMessageType() == MessageType.SYSTEM);
+        assertThat(page.getNextCursor()).isNotNull();
+    }
+
+    private void givenGroup(GroupStatus status, List<String> members) {
+        Group group = Group.builder()
+                .id(ROOM_ID)
+                .members(members)
+                .groupStatus(status)
+                .build();
+        when(groupMembershipCache.get(ROOM_ID)).thenReturn(Optional.of(GroupSnapshot.from(group)));
+    }
+
+    // count tin nhắn, mới nhất trước như findHistoryBefore trả về, tin nhắn đầu tiên là tin hệ thống
+    private List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            messages.add(Message.builder()
+                    .id(new ObjectId().toHexString())
+                    .roomId(ROOM_ID)
+                    .senderId(ALICE)
+                    .messageType(i == 0 ? MessageType.SYSTEM : MessageType.TEXT)
+                    .messageStatus(MessageStatus.SENT)
+                    .sendDate(START.minusMinutes(i))
+                    .build());
+        }
+        when(messageRepositoryQuery.findHistoryBefore(any(), any(), any(), anyInt())).thenReturn(messages);
+        return messages;
+    }
+}
@@ -0,0 +1,170 @@
+package com.project.chatbackend.cluster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 2 node LocalClusterRelay trong cùng JVM: kiểm tra bảng user -> node và việc chuyển message giữa các node
+ */
+class ClusterRelayBridgeTests {
+    private static final String ALICE = "alice@example.com";
+    private static final String BOB = "bob@example.com";
+    private final List<Message<?>> receivedByA = new CopyOnWriteArrayList<>();
+    private final List<Message<?>> receivedByB = new CopyOnWriteArrayList<>();
+    private LocalClusterRelay relayA;
+    private LocalClusterRelay relayB;
+    private ClusterRelayBridge nodeA;
+    private ClusterRelayBridge nodeB;
+
+    @BeforeEach
+    void setUp() {
+        relayA = new LocalClusterRelay("node-a");
+        relayB = new LocalClusterRelay("node-b");
+        nodeA = bridge(relayA, receivedByA);
+        nodeB = bridge(relayB, receivedByB);
+        nodeA.start();
+        nodeB.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    void principalSubscriptionRegistersTheSessionUser() {
+        nodeB.onSubscribe(subscribe("s1", "/user/queue/messages", ALICE));
+
+        assertThat(relayA.nodesOf(ALICE)).containsExactly("node-b");
+        assertThat(relayA.nodesOf("queue")).isEmpty();
+    }
+
+    @Test
+    void principalSubscriptionWithoutUserIsIgnored() {
+        nodeB.onSubscribe(subscribe("s1", "/user/queue/messages", null));
+
+        assertThat(relayA.nodesOf("queue")).isEmpty();
+    }
+
+    @Test
+    void literalUserSubscriptionRegistersTheUserInTheDestination() {
+        nodeB.onSubscribe(subscribe("s1", "/user/" + ALICE + "/queue/messages", null));
+
+        assertThat(relayA.nodesOf(ALICE)).containsExactly("node-b");
+    }
+
+    @Test
+    void userMessageIsRelayedOnlyToTheUsersNode() {
+        nodeB.onSubscribe(subscribe("s1", "/user/queue/messages", ALICE));
+
+        nodeA.preSend(brokerMessage("/user/" + ALICE + "/queue/messages", "hello"), null);
+        nodeA.preSend(brokerMessage("/user/" + BOB + "/queue/messages", "nobody"), null);
+
+        assertThat(receivedByB).hasSize(1);
+        Message<?> relayed = receivedByB.get(0);
+        assertThat(SimpMessageHeaderAccessor.getDestination(relayed.getHeaders()))
+                .isEqualTo("/user/" + ALICE + "/queue/messages");
+        assertThat(new String((byte[]) relayed.getPayload(), StandardCharsets.UTF_8)).isEqualTo("hello");
+        assertThat(relayed.getHeaders().get(ClusterRelayBridge.RELAYED_HEADER)).isEqualTo("node-b");
+        assertThat(receivedByA).isEmpty();
+    }
+
+    @Test
+    void relayedMessageIsNotRelayedAgain() {
+        nodeA.onSubscribe(subscribe("s1", "/user/queue/messages", ALICE));
+        nodeB.onSubscribe(subscribe("s2", "/user/queue/messages", ALICE));
+
+        nodeA.preSend(brokerMessage("/user/" + ALICE + "/queue/messages", "hello"), null);
+        nodeB.preSend(receivedByB.get(0), null);
+
+        assertThat(receivedByB).hasSize(1);
+        assertThat(receivedByA).isEmpty();
+    }
+
+    @Test
+    void topicMessageIsBroadcastToOtherNodes() {
+        nodeA.preSend(brokerMessage("/topic/group.1", "hi"), null);
+
+        assertThat(receivedByB).hasSize(1);
+        assertThat(receivedByA).isEmpty();
+    }
+
+    @Test
+    void userIsUnregisteredWhenTheLastSessionDisconnects() {
+        nodeB.onSubscribe(subscribe("s1", "/user/queue/messages", ALICE));
+        nodeB.onSubscribe(subscribe("s2", "/user/queue/messages", ALICE));
+
+        nodeB.onDisconnect(disconnect("s1"));
+        assertThat(relayA.nodesOf(ALICE)).containsExactly("node-b");
+
+        nodeB.onDisconnect(disconnect("s2"));
+        assertThat(relayA.nodesOf(ALICE)).isEmpty();
+        nodeA.preSend(brokerMessage("/user/" + ALICE + "/queue/messages", "hello"), null);
+        assertThat(receivedByB).isEmpty();
+    }
+
+    @Test
+    void invalidationIsDeliveredToOtherNodesOnly() {
+        List<String> invalidatedOnA = new CopyOnWriteArrayList<>();
+        List<String> invalidatedOnB = new CopyOnWriteArrayList<>();
+        nodeA.onInvalidate("groups", invalidatedOnA::add);
+        nodeB.onInvalidate("groups", invalidatedOnB::add);
+
+        nodeA.invalidate("groups", "group-1");
+        nodeA.invalidate("users", ALICE);
+
+        assertThat(invalidatedOnB).containsExactly("group-1");
+        assertThat(invalidatedOnA).isEmpty();
+        assertThat(receivedByB).isEmpty();
+    }
+
+    private ClusterRelayBridge bridge(ClusterRelay relay, List<Message<?>> received) {
+        MessageChannel brokerChannel = (message, timeout) -> received.add(message);
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("brokerChannel", brokerChannel);
+        return new ClusterRelayBridge(relay, beanFactory.getBeanProvider(MessageChannel.class));
+    }
+
+    private SessionSubscribeEvent subscribe(String sessionId, String destination, String user) {
+        Principal principal = user != null ? () -> user : null;
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        accessor.setUser(principal);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionSubscribeEvent(this, message, principal);
+    }
+
+    private SessionDisconnectEvent disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        return new SessionDisconnectEvent(this, message, sessionId, CloseStatus.NORMAL);
+    }
+
+    private Message<byte[]> brokerMessage(String destination, String payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(payload.getBytes(StandardCharsets.UTF_8), accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,106 @@
+package com.project.chatbackend.configs;
+
+import com.project.chatbackend.models.Group;
+import com.project.chatbackend.models.GroupSnapshot;
+import com.project.chatbackend.models.GroupStatus;
+import com.project.chatbackend.services.GroupMembershipCache;
+import com.project.chatbackend.services.JwtService;
+import com.project.chatbackend.services.UserDetailService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CONNECT phải có token, SUBSCRIBE /user/{id}/... chỉ cho chính user hoặc thành viên nhóm {id}
+ */
+class StompAuthInterceptorTests {
+    private static final String GROUP_ID = "group-1";
+    private static final String ALICE = "alice@example.com";
+    private final GroupMembershipCache groupMembershipCache = mock(GroupMembershipCache.class);
+    private final MessageChannel channel = mock(MessageChannel.class);
+    private final StompAuthInterceptor interceptor = new StompAuthInterceptor(
+            mock(JwtService.class), mock(UserDetailService.class), groupMembershipCache);
+
+    @BeforeEach
+    void setUp() {
+        when(groupMembershipCache.get(any())).thenReturn(Optional.empty());
+        Group group = Group.builder()
+                .id(GROUP_ID)
+                .members(List.of(ALICE))
+                .groupStatus(GroupStatus.ACTIVE)
+                .build();
+        when(groupMembershipCache.get(GROUP_ID)).thenReturn(Optional.of(GroupSnapshot.from(group)));
+    }
+
+    @Test
+    void connectWithoutTokenIsRejected() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setSessionId("s1");
+
+        assertThatThrownBy(() -> interceptor.preSend(message(accessor), channel))
+                .isInstanceOf(BadCredentialsException.class);
+    }
+
+    @Test
+    void memberMaySubscribeToLegacyGroupDestination() {
+        Message<?> subscribe = subscribe("/user/" + GROUP_ID + "/queue/messages", user(ALICE));
+
+        assertThat(interceptor.preSend(subscribe, channel)).isSameAs(subscribe);
+    }
+
+    @Test
+    void nonMemberMayNotSubscribeToLegacyGroupDestination() {
+        assertThatThrownBy(() -> interceptor.preSend(
+                subscribe("/user/" + GROUP_ID + "/queue/messages", user("bob@example.com")), channel))
+                .isInstanceOf(AccessDeniedException.class);
+        assertThatThrownBy(() -> interceptor.preSend(
+                subscribe("/user/" + GROUP_ID + "/queue/messages", null), channel))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    @Test
+    void userMaySubscribeOnlyToOwnQueues() {
+        Message<?> own = subscribe("/user/" + ALICE + "/queue/messages", user(ALICE));
+        Message<?> principal = subscribe("/user/queue/messages", user(ALICE));
+
+        assertThat(interceptor.preSend(own, channel)).isSameAs(own);
+        assertThat(interceptor.preSend(principal, channel)).isSameAs(principal);
+        assertThatThrownBy(() -> interceptor.preSend(
+                subscribe("/user/bob@example.com/queue/messages", user(ALICE)), channel))
+                .isInstanceOf(AccessDeniedException.class);
+    }
+
+    private Message<?> subscribe(String destination, Principal user) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId("s1");
+        accessor.setDestination(destination);
+        accessor.setUser(user);
+        return message(accessor);
+    }
+
+    private Message<?> message(StompHeaderAccessor accessor) {
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Principal user(String email) {
+        return new UsernamePasswordAuthenticationToken(email, null, List.of());
+    }
+}
@@ -0,0 +1,91 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.OutboxEvent;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * các lệnh mongo của claimBatch: chỉ event đến hạn (chưa claim hoặc lease đã hết) mới được gắn claim_token
+ */
+class OutboxClaimRepositoryImplTests {
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private static final LocalDateTime LEASE_UNTIL = NOW.plusMinutes(1);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final OutboxClaimRepositoryImpl repository = new OutboxClaimRepositoryImpl(mongoTemplate);
+
+    @Test
+    void claimLeasesDueEventsAndReturnsThemByToken() {
+        OutboxEvent claimed = OutboxEvent.builder().eventId("e1").build();
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class)))
+                .thenReturn(List.of(OutboxEvent.builder().eventId("e1").build(),
+                        OutboxEvent.builder().eventId("e2").build()))
+                .thenReturn(List.of(claimed));
+
+        List<OutboxEvent> events = repository.claimBatch(NOW, LEASE_UNTIL, 50);
+
+        assertThat(events).containsExactly(claimed);
+        ArgumentCaptor<Query> finds = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(finds.capture(), eq(OutboxEvent.class));
+        Query due = finds.getAllValues().get(0);
+        assertThat(due.getQueryObject()).isEqualTo(new Document("next_attempt_at", new Document("$lte", NOW)));
+        assertThat(due.getLimit()).isEqualTo(50);
+
+        ArgumentCaptor<Query> claim = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> lease = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(claim.capture(), lease.capture(), eq(OutboxEvent.class));
+        // next_attempt_at được kiểm tra lại: event instance khác vừa claim (lease chưa hết) bị bỏ qua
+        assertThat(claim.getValue().getQueryObject()).isEqualTo(new Document("_id", new Document("$in", List.of("e1", "e2")))
+                .append("next_attempt_at", new Document("$lte", NOW)));
+        Document set = lease.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set.get("next_attempt_at")).isEqualTo(LEASE_UNTIL);
+        String claimToken = set.getString("claim_token");
+        assertThat(claimToken).isNotBlank();
+        assertThat(finds.getAllValues().get(1).getQueryObject()).isEqualTo(new Document("claim_token", claimToken));
+    }
+
+    @Test
+    void expiredLeaseIsDueAgain() {
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of());
+        LocalDateTime afterLease = LEASE_UNTIL.plusSeconds(1);
+
+        repository.claimBatch(afterLease, afterLease.plusMinutes(1), 50);
+
+        // lease cũ được ghi vào next_attempt_at => hết lease thì event khớp điều kiện đến hạn
+        ArgumentCaptor<Query> due = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).find(due.capture(), eq(OutboxEvent.class));
+        Document nextAttemptAt = due.getValue().getQueryObject().get("next_attempt_at", Document.class);
+        assertThat((LocalDateTime) nextAttemptAt.get("$lte")).isAfter(LEASE_UNTIL);
+    }
+
+    @Test
+    void nothingDueClaimsNothing() {
+        when(mongoTemplate.find(any(Query.class), eq(OutboxEvent.class))).thenReturn(List.of());
+
+        assertThat(repository.claimBatch(NOW, LEASE_UNTIL, 50)).isEmpty();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(OutboxEvent.class));
+    }
+
+    @Test
+    void retryCountsAnAttemptButDueNowDoesNot() {
+        repository.retryAt("e1", LEASE_UNTIL);
+        repository.dueNow("e2");
+
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), updates.capture(), eq(OutboxEvent.class));
+        assertThat(updates.getAllValues().get(0).getUpdateObject().get("$inc", Document.class))
+                .isEqualTo(new Document("attempts", 1));
+        assertThat(updates.getAllValues().get(1).getUpdateObject()).doesNotContainKey("$inc");
+    }
+}
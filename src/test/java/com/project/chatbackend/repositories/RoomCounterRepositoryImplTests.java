@@ -0,0 +1,99 @@
+package com.project.chatbackend.repositories;
+
+import com.project.chatbackend.models.Room;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * fanOut được outbox gọi lại với cùng message: lệnh tăng unread chỉ khớp room chưa có message đó
+ * trong fan_out_message_ids, preview chỉ ghi khi room không mới hơn message
+ */
+class RoomCounterRepositoryImplTests {
+    private static final String ROOM_ID = "group-1";
+    private static final String SENDER = "alice@example.com";
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 1, 12, 0);
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+    private final RoomCounterRepositoryImpl repository = new RoomCounterRepositoryImpl(mongoTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Room.class)).thenReturn(bulkOperations);
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Room.class))).thenReturn(new Room());
+    }
+
+    @Test
+    void replayedMessageOnlyIncrementsRoomsThatHaveNotSeenIt() {
+        repository.fanOut(ROOM_ID, SENDER, List.of("bob@example.com"), "m1", "hi", "Alice: hi", TIME);
+        repository.fanOut(ROOM_ID, SENDER, List.of("bob@example.com"), "m1", "hi", "Alice: hi", TIME);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(4)).updateOne(queries.capture(), updates.capture());
+        for (int i : List.of(0, 2)) {
+            Document unreadQuery = queries.getAllValues().get(i).getQueryObject();
+            assertThat(unreadQuery.get("sender_id")).isEqualTo("bob@example.com");
+            // lần gọi lại thấy m1 trong fan_out_message_ids => không khớp, unread không tăng lần 2
+            assertThat(unreadQuery.get("fan_out_message_ids")).isEqualTo(new Document("$ne", "m1"));
+            Document unreadUpdate = updates.getAllValues().get(i).getUpdateObject();
+            assertThat(unreadUpdate.get("$inc", Document.class)).isEqualTo(new Document("number_of_unread_message", 1));
+            assertThat(unreadUpdate.get("$push", Document.class)).containsKey("fan_out_message_ids");
+        }
+    }
+
+    @Test
+    void previewIsOnlyWrittenWhenTheRoomIsNotNewer() {
+        repository.fanOut(ROOM_ID, SENDER, List.of("bob@example.com"), "m1", "hi", "Alice: hi", TIME);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        verify(bulkOperations, times(2)).updateOne(queries.capture(), updates.capture());
+        Document previewQuery = queries.getAllValues().get(1).getQueryObject();
+        assertThat(previewQuery.get("$or")).isEqualTo(List.of(
+                new Document("time", null),
+                new Document("time", new Document("$lte", TIME))));
+        Document preview = updates.getAllValues().get(1).getUpdateObject().get("$set", Document.class);
+        assertThat(preview.get("latest_message")).isEqualTo("Alice: hi");
+        assertThat(preview.get("sender")).isEqualTo(false);
+        assertThat(updates.getAllValues().get(1).getUpdateObject()).doesNotContainKey("$inc");
+    }
+
+    @Test
+    void senderRoomIsNotCountedAsReceiver() {
+        repository.fanOut(ROOM_ID, SENDER, List.of(SENDER), "m1", "hi", "Alice: hi", TIME);
+
+        verify(bulkOperations, never()).updateOne(any(Query.class), any(Update.class));
+        verify(bulkOperations, never()).execute();
+        verify(mongoTemplate).findAndModify(any(Query.class), any(UpdateDefinition.class),
+                any(FindAndModifyOptions.class), eq(Room.class));
+    }
+
+    @Test
+    void revokeClearsTheSenderFlagOfOtherMembers() {
+        repository.revokeLatest(ROOM_ID, SENDER, "Tin nhắn đã thu hồi");
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateMulti(query.capture(), update.capture(), eq(Room.class));
+        assertThat(query.getValue().getQueryObject().get("sender_id")).isEqualTo(new Document("$ne", SENDER));
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class))
+                .isEqualTo(new Document("latest_message", "Tin nhắn đã thu hồi").append("sender", false));
+    }
+}
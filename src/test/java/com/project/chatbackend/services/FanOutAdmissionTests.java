@@ -0,0 +1,153 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.MessageStatus;
+import com.project.chatbackend.models.TextContent;
+import com.project.chatbackend.repositories.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * FanOutAdmission: giới hạn task đang chạy của mỗi user, trả slot khi future hoàn thành,
+ * bị từ chối thì text ngắn chạy trên thread gọi, còn lại để outbox gửi lại
+ */
+class FanOutAdmissionTests {
+    private static final int PER_USER_LIMIT = 2;
+    private static final String ALICE = "alice@example.com";
+    private final S3UploadAsync s3UploadAsync = mock(S3UploadAsync.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final MessageOutbox messageOutbox = mock(MessageOutbox.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<CompletableFuture<Void>> running = new ArrayList<>();
+    private FanOutAdmission admission;
+
+    @BeforeEach
+    void setUp() {
+        admission = new FanOutAdmission(s3UploadAsync, messageRepository, messageOutbox,
+                mock(NotificationDispatcher.class), meterRegistry);
+        ReflectionTestUtils.setField(admission, "perUserLimit", PER_USER_LIMIT);
+        ReflectionTestUtils.setField(admission, "callerRunsMaxChars", 10);
+        when(s3UploadAsync.deliverAsync(any(), any(), any(), any())).thenAnswer(invocation -> {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            running.add(future);
+            return future;
+        });
+    }
+
+    @Test
+    void userOverTheLimitIsShedWithoutTouchingTheExecutor() {
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e1");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e2");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e3");
+        admission.deliver(text("bob@example.com", "hi"), "Bob", null, "e4");
+
+        verify(s3UploadAsync, times(3)).deliverAsync(any(), any(), any(), any());
+        verify(s3UploadAsync).deliverNow(any(), eq("Alice"), any(), eq("e3"));
+        assertThat(shed("user_limit", "caller_runs")).isEqualTo(1);
+    }
+
+    @Test
+    void completedFutureReleasesTheSlot() {
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e1");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e2");
+        running.get(0).complete(null);
+        // lỗi cũng trả slot
+        running.get(1).completeExceptionally(new IllegalStateException("mongo down"));
+
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e3");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e4");
+
+        verify(s3UploadAsync, times(4)).deliverAsync(any(), any(), any(), any());
+        verify(s3UploadAsync, never()).deliverNow(any(), any(), any(), any());
+    }
+
+    @Test
+    void shortTextRunsOnTheCallerWhenTheExecutorIsFull() {
+        when(s3UploadAsync.deliverAsync(any(), any(), any(), any())).thenThrow(new TaskRejectedException("queue full"));
+
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e1");
+
+        verify(s3UploadAsync).deliverNow(any(), eq("Alice"), any(), eq("e1"));
+        verify(messageOutbox, never()).dueNow(any());
+        assertThat(shed("executor_full", "caller_runs")).isEqualTo(1);
+        // slot đã trả lại: lần sau vẫn thử executor
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e2");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e3");
+        verify(s3UploadAsync, times(3)).deliverAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    void longTextIsDeferredToTheOutbox() {
+        when(s3UploadAsync.deliverAsync(any(), any(), any(), any())).thenThrow(new TaskRejectedException("queue full"));
+        Message message = text(ALICE, "a message longer than ten chars");
+        message.setMessageStatus(MessageStatus.SENDING);
+
+        admission.deliver(message, "Alice", null, "e1");
+
+        verify(s3UploadAsync, never()).deliverNow(any(), any(), any(), any());
+        verify(messageRepository).save(message);
+        verify(messageOutbox).dueNow("e1");
+        assertThat(shed("executor_full", "deferred")).isEqualTo(1);
+    }
+
+    @Test
+    void uploadOverTheLimitNeverStartsTheUpload() {
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e1");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e2");
+        AtomicInteger started = new AtomicInteger();
+        Message file = text(ALICE, "file");
+
+        admission.upload(file, () -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        });
+
+        assertThat(started).hasValue(0);
+        assertThat(file.getMessageStatus()).isEqualTo(MessageStatus.ERROR);
+        verify(messageRepository).save(file);
+        assertThat(shed("user_limit", "failed")).isEqualTo(1);
+    }
+
+    @Test
+    void failedUploadStartReleasesTheSlot() {
+        Supplier<CompletableFuture<Void>> rejected = () -> {
+            throw new TaskRejectedException("queue full");
+        };
+        admission.upload(text(ALICE, "file"), rejected);
+        admission.upload(text(ALICE, "file"), rejected);
+
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e1");
+        admission.deliver(text(ALICE, "hi"), "Alice", null, "e2");
+
+        verify(s3UploadAsync, times(2)).deliverAsync(any(), any(), any(), any());
+        assertThat(shed("executor_full", "failed")).isEqualTo(2);
+    }
+
+    private double shed(String reason, String outcome) {
+        return meterRegistry.get("chat.admission.shed").tag("reason", reason).tag("outcome", outcome).counter().count();
+    }
+
+    private Message text(String senderId, String text) {
+        return Message.builder()
+                .id(senderId + "-" + text)
+                .senderId(senderId)
+                .receiverId("receiver")
+                .content(TextContent.of(text))
+                .messageStatus(MessageStatus.SENT)
+                .build();
+    }
+}
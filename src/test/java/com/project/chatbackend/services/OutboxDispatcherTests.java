@@ -0,0 +1,153 @@
+package com.project.chatbackend.services;
+
+import com.project.chatbackend.models.Message;
+import com.project.chatbackend.models.MessageStatus;
+import com.project.chatbackend.models.OutboxEvent;
+import com.project.chatbackend.models.TextContent;
+import com.project.chatbackend.repositories.MessageRepository;
+import com.project.chatbackend.repositories.OutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * OutboxDispatcher với repository giả: thứ tự gửi lại, max-attempts, backoff
+ */
+class OutboxDispatcherTests {
+    private static final int MAX_ATTEMPTS = 3;
+    private final OutboxRepository outboxRepository = mock(OutboxRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final S3UploadAsync s3UploadAsync = mock(S3UploadAsync.class);
+    private final FanOutAdmission fanOutAdmission = mock(FanOutAdmission.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> delivered = new ArrayList<>();
+    private OutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        dispatcher = new OutboxDispatcher(outboxRepository, messageRepository, mock(GroupMembershipCache.class),
+                s3UploadAsync, fanOutAdmission, meterRegistry);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", MAX_ATTEMPTS);
+        dispatcher.registerMetrics();
+        when(s3UploadAsync.deliverAsync(any(), any(), any(), any())).thenAnswer(invocation -> {
+            delivered.add(invocation.getArgument(3));
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Test
+    void eventsAreInterleavedBySender() {
+        claim(event("a1", "alice", 0), event("a2", "alice", 0), event("a3", "alice", 0),
+                event("b1", "bob", 0), event("c1", "carol", 0));
+
+        dispatcher.dispatch();
+
+        assertThat(delivered).containsExactly("a1", "b1", "c1", "a2", "a3");
+    }
+
+    @Test
+    void eventBelowMaxAttemptsIsDeliveredAgain() {
+        claim(event("e1", "alice", MAX_ATTEMPTS - 1));
+
+        dispatcher.dispatch();
+
+        assertThat(delivered).containsExactly("e1");
+        verify(fanOutAdmission, never()).markFailed(any());
+    }
+
+    @Test
+    void eventAtMaxAttemptsIsMarkedFailedAndDropped() {
+        claim(event("e1", "alice", MAX_ATTEMPTS));
+
+        dispatcher.dispatch();
+
+        assertThat(delivered).isEmpty();
+        ArgumentCaptor<Message> failed = ArgumentCaptor.forClass(Message.class);
+        verify(fanOutAdmission).markFailed(failed.capture());
+        assertThat(failed.getValue().getId()).isEqualTo("message-e1");
+        verify(outboxRepository).deleteById("e1");
+        verify(outboxRepository, never()).retryAt(any(), any());
+        assertThat(meterRegistry.get("chat.outbox.dispatched").tag("result", "failed").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void failedDeliveryIsRetriedWithExponentialBackoff() {
+        when(s3UploadAsync.deliverAsync(any(), any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("mongo down")));
+        claim(event("e1", "alice", 2));
+        LocalDateTime before = LocalDateTime.now();
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).retryAt(eq("e1"), nextAttemptAt.capture());
+        // lần thử thứ 3 => chờ 2^2 giây
+        assertThat(nextAttemptAt.getValue()).isBetween(before.plusSeconds(4), LocalDateTime.now().plusSeconds(4));
+        verify(outboxRepository, never()).deleteById(any());
+    }
+
+    @Test
+    void eventWithoutMessageIsDropped() {
+        OutboxEvent orphan = event("e1", "alice", 0);
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(orphan));
+        when(messageRepository.findAllById(any())).thenReturn(List.of());
+
+        dispatcher.dispatch();
+
+        assertThat(delivered).isEmpty();
+        verify(outboxRepository).deleteById("e1");
+    }
+
+    @Test
+    void claimLeasesEventsForOneMinute() {
+        claim();
+        LocalDateTime before = LocalDateTime.now();
+
+        dispatcher.dispatch();
+
+        ArgumentCaptor<LocalDateTime> now = ArgumentCaptor.forClass(LocalDateTime.class);
+        ArgumentCaptor<LocalDateTime> leaseUntil = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(outboxRepository).claimBatch(now.capture(), leaseUntil.capture(), eq(100));
+        assertThat(now.getValue()).isAfterOrEqualTo(before);
+        assertThat(leaseUntil.getValue()).isEqualTo(now.getValue().plusMinutes(1));
+    }
+
+    private void claim(OutboxEvent... events) {
+        when(outboxRepository.claimBatch(any(), any(), anyInt())).thenReturn(List.of(events));
+        List<Message> messages = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            messages.add(Message.builder()
+                    .id(event.getMessageId())
+                    .senderId(event.getSenderId())
+                    .receiverId("receiver")
+                    .content(TextContent.of("hello"))
+                    .messageStatus(MessageStatus.SENT)
+                    .build());
+        }
+        when(messageRepository.findAllById(any())).thenReturn(messages);
+    }
+
+    private OutboxEvent event(String eventId, String senderId, int attempts) {
+        return OutboxEvent.builder()
+                .eventId(eventId)
+                .messageId("message-" + eventId)
+                .senderId(senderId)
+                .attempts(attempts)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.project.chatbackend.services;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.project.chatbackend.models.RevokedToken;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * TokenRevocationRegistry.start: change stream mở trước khi tải revoked_tokens,
+ * không mở được stream thì lần poll đầu lấy lại từ trước lúc tải
+ */
+class TokenRevocationRegistryTests {
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> collection = mock(MongoCollection.class);
+    @SuppressWarnings("unchecked")
+    private final ChangeStreamIterable<Document> changeStreamIterable = mock(ChangeStreamIterable.class);
+    @SuppressWarnings("unchecked")
+    private final MongoChangeStreamCursor<ChangeStreamDocument<Document>> changeStream = mock(MongoChangeStreamCursor.class);
+    private final TokenRevocationRegistry registry =
+            new TokenRevocationRegistry(mongoTemplate, mock(TokenValidationCache.class));
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(registry, "useChangeStream", true);
+        when(mongoTemplate.getCollection("revoked_tokens")).thenReturn(collection);
+        when(collection.watch(anyList())).thenReturn(changeStreamIterable);
+        when(mongoTemplate.find(any(Query.class), eq(RevokedToken.class))).thenReturn(List.of(RevokedToken.builder()
+                .jti("j1")
+                .revokedAt(LocalDateTime.now())
+                .expiresAt(LocalDateTime.now().plusMinutes(10))
+                .build()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.stop();
+    }
+
+    @Test
+    void changeStreamIsOpenedBeforeTheInitialLoad() {
+        when(changeStreamIterable.cursor()).thenReturn(changeStream);
+
+        registry.start();
+
+        InOrder order = inOrder(changeStreamIterable, mongoTemplate);
+        order.verify(changeStreamIterable).cursor();
+        order.verify(mongoTemplate).find(any(Query.class), eq(RevokedToken.class));
+        assertThat(registry.isRevoked("j1")).isTrue();
+    }
+
+    @Test
+    void withoutChangeStreamFirstPollStartsBeforeTheInitialLoad() {
+        when(changeStreamIterable.cursor())
+                .thenThrow(new MongoException("The $changeStream stage is only supported on replica sets"));
+        LocalDateTime before = LocalDateTime.now();
+
+        registry.start();
+        registry.poll();
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(2)).find(queries.capture(), eq(RevokedToken.class));
+        Document revokedAt = queries.getAllValues().get(1).getQueryObject().get("revoked_at", Document.class);
+        assertThat((LocalDateTime) revokedAt.get("$gte")).isBefore(before);
+        assertThat(registry.isRevoked("j1")).isTrue();
+    }
+}